@@ -0,0 +1,173 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.Matchers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.semantica.pocketknife.AggregateCallStore;
+import com.semantica.pocketknife.CallStore;
+import com.semantica.pocketknife.Calls;
+import com.semantica.pocketknife.ColumnarCallStore;
+import com.semantica.pocketknife.InvocationCallStore;
+import com.semantica.pocketknife.StackTraceCaptureMode;
+
+/**
+ * Measures registration and verification of calls on {@link Calls}. The
+ * registering benchmarks reset their Calls instance every
+ * {@value #CALLS_PER_RESET} registrations to keep memory bounded, the cost of
+ * which is included in the results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallsBenchmark {
+
+	private static final int DISTINCT_CALLS = 1024;
+	private static final int CALLS_PER_RESET = 4096;
+	private static final int PROTOCOL_LENGTH = 1024;
+
+	@Param({ "FULL", "LAZY", "NONE" })
+	private StackTraceCaptureMode stackTraceCaptureMode;
+
+	@Param({ "INVOCATION", "AGGREGATE", "COLUMNAR" })
+	private CallStoreType callStoreType;
+
+	private Method method;
+	private Integer[] ids;
+	private String[] names;
+	private Matcher<?>[] idMatchers;
+	private Predicate<?>[] idPredicates;
+	private Calls methodKeyedCalls;
+	private Calls stringKeyedCalls;
+	private Calls verifiedCalls;
+	private Calls strictCalls;
+	private int registered;
+	private int index;
+
+	public static class Service {
+
+		public void process(int id, String name) {
+		}
+
+	}
+
+	public enum CallStoreType {
+
+		INVOCATION(InvocationCallStore::new), AGGREGATE(() -> new AggregateCallStore(1)), COLUMNAR(ColumnarCallStore::new);
+
+		private final Supplier<CallStore> callStoreSupplier;
+
+		private CallStoreType(Supplier<CallStore> callStoreSupplier) {
+			this.callStoreSupplier = callStoreSupplier;
+		}
+
+		private Calls newCalls(Class<?> keyClass, StackTraceCaptureMode stackTraceCaptureMode) {
+			return new Calls(keyClass, stackTraceCaptureMode, false, callStoreSupplier.get());
+		}
+
+	}
+
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		method = Service.class.getMethod("process", int.class, String.class);
+		ids = new Integer[DISTINCT_CALLS];
+		names = new String[DISTINCT_CALLS];
+		idMatchers = new Matcher<?>[DISTINCT_CALLS];
+		idPredicates = new Predicate<?>[DISTINCT_CALLS];
+		methodKeyedCalls = callStoreType.newCalls(Method.class, stackTraceCaptureMode);
+		stringKeyedCalls = callStoreType.newCalls(String.class, stackTraceCaptureMode);
+		verifiedCalls = callStoreType.newCalls(Method.class, stackTraceCaptureMode);
+		strictCalls = callStoreType.newCalls(Method.class, stackTraceCaptureMode);
+		for (int i = 0; i < DISTINCT_CALLS; i++) {
+			final int id = i;
+			ids[i] = i;
+			names[i] = "name" + i;
+			idMatchers[i] = Matchers.equalTo(i);
+			idPredicates[i] = (Predicate<Integer>) arg -> arg == id;
+			verifiedCalls.registerCall(method, ids[i], names[i]);
+		}
+	}
+
+	private int nextIndex() {
+		index = (index + 1) & (DISTINCT_CALLS - 1);
+		return index;
+	}
+
+	private void resetPeriodically() {
+		if (++registered == CALLS_PER_RESET) {
+			methodKeyedCalls.reset();
+			stringKeyedCalls.reset();
+			registered = 0;
+		}
+	}
+
+	@Benchmark
+	public void registerCallWithMethodKey() {
+		int i = nextIndex();
+		methodKeyedCalls.registerCall(method, ids[i], names[i]);
+		resetPeriodically();
+	}
+
+	@Benchmark
+	public void registerCallWithStringKey() {
+		int i = nextIndex();
+		stringKeyedCalls.registerCall(ids[i], names[i]);
+		resetPeriodically();
+	}
+
+	@Benchmark
+	public boolean verifyCallWithExactArguments() {
+		int i = nextIndex();
+		return verifiedCalls.verifyCall(1, method, ids[i], names[i]);
+	}
+
+	@Benchmark
+	public boolean verifyCallWithHamcrestMatcher() {
+		int i = nextIndex();
+		return verifiedCalls.verifyCall(1, method, idMatchers[i], names[i]);
+	}
+
+	@Benchmark
+	public boolean verifyCallWithPredicate() {
+		int i = nextIndex();
+		return verifiedCalls.verifyCall(1, method, idPredicates[i], names[i]);
+	}
+
+	/**
+	 * Registers a protocol of {@value #PROTOCOL_LENGTH} calls and verifies it
+	 * strictly, call by call.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(PROTOCOL_LENGTH)
+	public boolean registerAndVerifyStrictlyAndRemoveCalls() {
+		boolean verified = true;
+		for (int i = 0; i < PROTOCOL_LENGTH; i++) {
+			strictCalls.registerCall(method, ids[i], names[i]);
+		}
+		for (int i = 0; i < PROTOCOL_LENGTH; i++) {
+			verified &= strictCalls.verifyStrictlyAndRemoveCall(method, ids[i], names[i]);
+		}
+		strictCalls.reset();
+		return verified;
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.semantica.pocketknife.Calls;
+import com.semantica.pocketknife.MethodCall;
+import com.semantica.pocketknife.StackTraceCaptureMode;
+
+/**
+ * Measures the cost of hashing and comparing {@link MethodCall}s, both directly
+ * and as keys of a {@link Calls} instance while registering and verifying calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodCallBenchmark {
+
+	private static final int DISTINCT_CALLS = 1024;
+
+	private Method method;
+	private Object[][] args;
+	private MethodCall[] methodCalls;
+	private MethodCall[] equalMethodCalls;
+	private Calls registeringCalls;
+	private Calls verifiedCalls;
+	private int index;
+
+	public static class Dto {
+
+		public void invoke(int number, String text, long[] values) {
+		}
+
+	}
+
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		method = Dto.class.getMethod("invoke", int.class, String.class, long[].class);
+		args = new Object[DISTINCT_CALLS][];
+		methodCalls = new MethodCall[DISTINCT_CALLS];
+		equalMethodCalls = new MethodCall[DISTINCT_CALLS];
+		registeringCalls = new Calls(Method.class, StackTraceCaptureMode.NONE);
+		verifiedCalls = new Calls(Method.class, StackTraceCaptureMode.NONE);
+		for (int i = 0; i < DISTINCT_CALLS; i++) {
+			args[i] = new Object[] { i, "text" + i, new long[] { i, i + 1, i + 2 } };
+			methodCalls[i] = new MethodCall(method, args[i]);
+			equalMethodCalls[i] = new MethodCall(method,
+					new Object[] { i, "text" + i, new long[] { i, i + 1, i + 2 } });
+			verifiedCalls.registerCall(method, args[i]);
+		}
+	}
+
+	private int nextIndex() {
+		index = (index + 1) & (DISTINCT_CALLS - 1);
+		return index;
+	}
+
+	@Benchmark
+	public int methodCallHashCode() {
+		int i = nextIndex();
+		return new MethodCall(method, args[i]).hashCode();
+	}
+
+	@Benchmark
+	public boolean methodCallEquals() {
+		int i = nextIndex();
+		return methodCalls[i].equals(equalMethodCalls[i]);
+	}
+
+	@Benchmark
+	public boolean registerAndVerifyAndRemoveCall() {
+		int i = nextIndex();
+		registeringCalls.registerCall(method, args[i]);
+		return registeringCalls.verifyAndRemoveCall(1, method, args[i]);
+	}
+
+	@Benchmark
+	public boolean verifyCall() {
+		int i = nextIndex();
+		return verifiedCalls.verifyCall(1, method, args[i]);
+	}
+
+}
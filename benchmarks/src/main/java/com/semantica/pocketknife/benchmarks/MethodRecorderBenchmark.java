@@ -0,0 +1,84 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.Matchers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.semantica.pocketknife.MethodCall;
+import com.semantica.pocketknife.MethodCallHandle;
+import com.semantica.pocketknife.MethodRecorder;
+
+/**
+ * Measures the creation of {@link MethodRecorder}s, the capture of method
+ * calls through their proxies and the binding of compiled method calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodRecorderBenchmark {
+
+	private MethodRecorder<Service> recorder;
+	private MethodCallHandle process;
+	private int id = 1;
+	private String name = "name";
+	private Matcher<Integer> idMatcher = Matchers.greaterThan(0);
+
+	public static class Service {
+
+		public String getName() {
+			return "name";
+		}
+
+		public void process(int id, String name) {
+		}
+
+	}
+
+	@Setup
+	public void setUp() {
+		recorder = MethodRecorder.recordInvocationsOn(Service.class);
+		process = recorder.compile(() -> recorder.getProxy().process(0, null), 0, 1);
+	}
+
+	@Benchmark
+	public MethodRecorder<Service> createMethodRecorder() {
+		return MethodRecorder.recordInvocationsOn(Service.class);
+	}
+
+	@Benchmark
+	public MethodCall captureMethodCall() {
+		return recorder.getMethodCall(recorder.getProxy().getName());
+	}
+
+	@Benchmark
+	public MethodCall captureMethodCallWithArguments() {
+		recorder.getProxy().process(id, name);
+		return recorder.getMethodCall();
+	}
+
+	@Benchmark
+	public MethodCall captureMethodCallWithMatcher() {
+		recorder.getProxy().process(recorder.storeAndCreateIdInstanceOfTypeArgument(idMatcher, Integer.class), name);
+		return recorder.getMethodCall();
+	}
+
+	@Benchmark
+	public MethodCall bindCompiledMethodCall() {
+		return process.bind(id, name);
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.semantica.pocketknife.Calls;
+import com.semantica.pocketknife.Mock;
+import com.semantica.pocketknife.MocksRegistry;
+import com.semantica.pocketknife.StackTraceCaptureMode;
+import com.semantica.pocketknife.VerificationReport;
+
+/**
+ * Measures the verification of all mocks of a {@link MocksRegistry} of which
+ * some mocks have remaining calls, using a pool of the given parallelism, and
+ * the registration of a mock in a registry that holds many mocks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MocksRegistryBenchmark {
+
+	private static final int MOCKS = 256;
+	private static final int CALLS_PER_MOCK = 1024;
+
+	@Param({ "1", "4" })
+	private int parallelism;
+
+	private ForkJoinPool pool;
+	private MocksRegistry mocksRegistry;
+	private ServiceMock registeredMock;
+
+	public static class ServiceMock implements Mock {
+
+		private final Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE);
+
+		public void process(int id) {
+			calls.registerCall(id);
+		}
+
+		@Override
+		public Calls getCalls() {
+			return calls;
+		}
+
+		@Override
+		public void reset() {
+			calls.reset();
+		}
+
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		pool = new ForkJoinPool(parallelism);
+		mocksRegistry = new MocksRegistry();
+		for (int i = 0; i < MOCKS; i++) {
+			ServiceMock mock = new ServiceMock();
+			// Every other mock has remaining calls
+			for (int id = 0; i % 2 == 0 && id < CALLS_PER_MOCK; id++) {
+				mock.process(id);
+			}
+			mocksRegistry.registerMock(mock);
+		}
+		registeredMock = new ServiceMock();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public VerificationReport verifyAllMocks() {
+		return mocksRegistry.verifyAllMocks(pool);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public boolean registerAndDeregisterMock() {
+		boolean registered = mocksRegistry.registerMock(registeredMock);
+		mocksRegistry.deregisterMock(registeredMock);
+		return registered;
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by the (regular JMH) command line options and
+ * always reports the allocation rate next to the throughput by adding the GC
+ * profiler.
+ */
+public class PocketknifeBenchmarks {
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		if (commandLineOptions.shouldHelp()) {
+			commandLineOptions.showHelp();
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions).addProfiler(GCProfiler.class);
+		List<String> jvmArgsAppend = new ArrayList<>(commandLineOptions.getJvmArgsAppend().orElse(new ArrayList<>()));
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			// cglib defines its proxy classes through reflective access to ClassLoader
+			jvmArgsAppend.add("--add-opens=java.base/java.lang=ALL-UNNAMED");
+		}
+		options.jvmArgsAppend(jvmArgsAppend.toArray(new String[0]));
+		Runner runner = new Runner(options.build());
+		if (commandLineOptions.shouldList()) {
+			runner.list();
+		} else {
+			runner.run();
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.semantica.pocketknife.Primitives;
+
+/**
+ * Measures the creation of identifier values for primitive and interface types.
+ * Primitive identifier values are also created on all available threads, to
+ * show that their allocation scales across cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitivesBenchmark {
+
+	public interface Identified {
+
+		public int getId();
+
+	}
+
+	public static abstract class AbstractIdentified implements Identified {
+
+	}
+
+	@Benchmark
+	public Integer identifierValueForInt() {
+		return Primitives.identifierValue(int.class);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Integer identifierValueForIntOnAllThreads() {
+		return Primitives.identifierValue(int.class);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Double identifierValueForDoubleOnAllThreads() {
+		return Primitives.identifierValue(double.class);
+	}
+
+	@Benchmark
+	public Identified identifierValueForInterface() {
+		return Primitives.identifierValue(Identified.class);
+	}
+
+	@Benchmark
+	public AbstractIdentified identifierValueForAbstractClass() {
+		return Primitives.identifierValue(AbstractIdentified.class);
+	}
+
+}
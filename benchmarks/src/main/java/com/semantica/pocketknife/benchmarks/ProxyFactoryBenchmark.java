@@ -0,0 +1,93 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.semantica.pocketknife.CglibProxyFactory;
+import com.semantica.pocketknife.JdkProxyFactory;
+import com.semantica.pocketknife.MethodCall;
+import com.semantica.pocketknife.MethodRecorder;
+import com.semantica.pocketknife.ProxyFactory;
+
+/**
+ * Compares the proxy factory backends for recording method calls on an
+ * interface. The startup benchmark measures the first recorder (including the
+ * generation of its proxy class) and its first capture in a fresh JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyFactoryBenchmark {
+
+	@Param({ "JDK", "CGLIB" })
+	private Backend backend;
+
+	public interface Repository {
+
+		public String find(long id);
+
+	}
+
+	public enum Backend {
+
+		JDK(JdkProxyFactory::new), CGLIB(CglibProxyFactory::new);
+
+		private final Supplier<ProxyFactory> proxyFactorySupplier;
+
+		private Backend(Supplier<ProxyFactory> proxyFactorySupplier) {
+			this.proxyFactorySupplier = proxyFactorySupplier;
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class RecorderState {
+
+		private MethodRecorder<Repository> recorder;
+
+		@Setup
+		public void setUp(ProxyFactoryBenchmark benchmark) {
+			recorder = MethodRecorder.recordInvocationsOn(Repository.class,
+					benchmark.backend.proxyFactorySupplier.get());
+		}
+
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(10)
+	public MethodCall startup() {
+		MethodRecorder<Repository> recorder = MethodRecorder.recordInvocationsOn(Repository.class,
+				backend.proxyFactorySupplier.get());
+		return recorder.getMethodCall(recorder.getProxy().find(1));
+	}
+
+	@Benchmark
+	public MethodRecorder<Repository> createMethodRecorder() {
+		return MethodRecorder.recordInvocationsOn(Repository.class, backend.proxyFactorySupplier.get());
+	}
+
+	@Benchmark
+	public MethodCall captureMethodCall(RecorderState state) {
+		return state.recorder.getMethodCall(state.recorder.getProxy().find(1));
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.semantica.pocketknife.pojo.ReflectionPojoTester;
+
+/**
+ * Measures a complete reflective getter, setter, constructor, toString(),
+ * equals() and hashCode() test of a small POJO.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionPojoTesterBenchmark {
+
+	public static class Customer {
+
+		private String name;
+		private int age;
+		private boolean active;
+
+		public Customer() {
+			super();
+		}
+
+		public Customer(String name, int age, boolean active) {
+			super();
+			this.name = name;
+			this.age = age;
+			this.active = active;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		@Override
+		public String toString() {
+			return ReflectionToStringBuilder.toString(this);
+		}
+
+		@Override
+		public int hashCode() {
+			return HashCodeBuilder.reflectionHashCode(this);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return EqualsBuilder.reflectionEquals(this, other);
+		}
+
+	}
+
+	@Benchmark
+	public void reflectionOnFieldsTest() throws InstantiationException, IllegalAccessException,
+			IllegalArgumentException, InvocationTargetException, NoSuchFieldException, SecurityException {
+		ReflectionPojoTester.reflectionOnFieldsTest(Customer.class);
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.semantica.pocketknife.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.semantica.pocketknife.WrappedSerializable;
+import com.semantica.pocketknife.WrappedSerializable.SerializationType;
+
+/**
+ * Measures rendering a wrapped DTO through {@link WrappedSerializable}: into a
+ * String, streamed to an output stream and repeatedly with a cached serialized
+ * form.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrappedSerializableBenchmark {
+
+	@Param({ "JSON", "YAML" })
+	private SerializationType serializationType;
+
+	@Param({ "10", "1000" })
+	private int lines;
+
+	private WrappedSerializable<Order> wrappedOrder;
+	private WrappedSerializable<Order> cachingWrappedOrder;
+	private OutputStream outputStream;
+
+	public static class OrderLine implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private String product;
+		private int quantity;
+
+		public OrderLine(String product, int quantity) {
+			super();
+			this.product = product;
+			this.quantity = quantity;
+		}
+
+		public String getProduct() {
+			return product;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+	}
+
+	public static class Order implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private String customer;
+		private List<OrderLine> lines = new ArrayList<>();
+
+		public Order(String customer) {
+			super();
+			this.customer = customer;
+		}
+
+		public String getCustomer() {
+			return customer;
+		}
+
+		public List<OrderLine> getLines() {
+			return lines;
+		}
+
+	}
+
+	@Setup
+	public void setUp() {
+		Order order = new Order("customer");
+		for (int i = 0; i < lines; i++) {
+			order.getLines().add(new OrderLine("product" + i, i));
+		}
+		wrappedOrder = new WrappedSerializable<>(order, serializationType);
+		cachingWrappedOrder = new WrappedSerializable<>(order, serializationType, true);
+	}
+
+	@Setup
+	public void setUpOutputStream(Blackhole blackhole) {
+		outputStream = new OutputStream() {
+
+			@Override
+			public void write(int b) {
+				blackhole.consume(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				blackhole.consume(b);
+			}
+
+		};
+	}
+
+	@Benchmark
+	public String wrappedSerializableToString() {
+		return wrappedOrder.toString();
+	}
+
+	@Benchmark
+	public void wrappedSerializableWriteToOutputStream() throws IOException {
+		wrappedOrder.writeTo(outputStream);
+	}
+
+	@Benchmark
+	public String cachedWrappedSerializableToString() {
+		return cachingWrappedOrder.toString();
+	}
+
+}
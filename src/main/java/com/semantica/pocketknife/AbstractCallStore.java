@@ -0,0 +1,105 @@
+package com.semantica.pocketknife;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base class for call stores that keep the registered invocations per distinct
+ * method call.
+ *
+ * @param <V> type of the invocation data that is kept per method call
+ */
+abstract class AbstractCallStore<V> implements CallStore {
+
+	// Object can be: Method or String (method name)
+	protected Map<MethodCall, V> calls = new HashMap<>();
+	// Secondary index of the registered method calls by method and number of
+	// arguments, used to look up calls for queries with matching arguments
+	private Map<MethodSignature, Set<MethodCall>> callsBySignature = new HashMap<>();
+
+	/**
+	 * @return new, empty invocation data for a method call that is registered for
+	 *         the first time
+	 */
+	protected abstract V newInvocations(MethodCall methodCall, int firstSequenceNo);
+
+	protected V getOrCreateInvocations(MethodCall methodCall, int sequenceNo) {
+		V invocations = calls.get(methodCall);
+		if (invocations == null) {
+			invocations = newInvocations(methodCall, sequenceNo);
+			calls.put(methodCall, invocations);
+			callsBySignature.computeIfAbsent(new MethodSignature(methodCall), signature -> new LinkedHashSet<>())
+					.add(methodCall);
+		}
+		return invocations;
+	}
+
+	/**
+	 * @return the stored method calls that can match the query: the method call
+	 *         itself for exact queries or all method calls with the same signature
+	 *         for queries with matching arguments
+	 */
+	protected Collection<MethodCall> getCandidates(MethodCall queryMethodCall) {
+		if (queryMethodCall.hasMatchingArguments()) {
+			return callsBySignature.getOrDefault(new MethodSignature(queryMethodCall), Collections.emptySet());
+		} else {
+			return calls.containsKey(queryMethodCall) ? Collections.singleton(queryMethodCall)
+					: Collections.emptySet();
+		}
+	}
+
+	@Override
+	public MethodCall find(MethodCall queryMethodCall) {
+		if (!queryMethodCall.hasMatchingArguments()) {
+			return calls.containsKey(queryMethodCall) ? queryMethodCall : null;
+		}
+		MethodCall matchingCall = null;
+		for (MethodCall registeredCall : getCandidates(queryMethodCall)) {
+			if (queryMethodCall.matches(registeredCall.getMethod(), registeredCall.getArgs())) {
+				if (matchingCall != null) {
+					throw new IllegalArgumentException(
+							"The methodCall was ambiguously specified using matching arguments.");
+				}
+				matchingCall = registeredCall;
+			}
+		}
+		return matchingCall;
+	}
+
+	@Override
+	public void remove(MethodCall storedMethodCall) {
+		if (calls.remove(storedMethodCall) != null) {
+			MethodSignature signature = new MethodSignature(storedMethodCall);
+			Set<MethodCall> callsWithSignature = callsBySignature.get(signature);
+			callsWithSignature.remove(storedMethodCall);
+			if (callsWithSignature.isEmpty()) {
+				callsBySignature.remove(signature);
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return calls.isEmpty();
+	}
+
+	@Override
+	public Collection<MethodCall> getMethodCalls() {
+		return Collections.unmodifiableSet(calls.keySet());
+	}
+
+	/**
+	 * Replaces the maps instead of clearing them, which would take time in
+	 * proportion to their capacity and keep their (large) tables alive.
+	 */
+	@Override
+	public void clear() {
+		calls = new HashMap<>();
+		callsBySignature = new HashMap<>();
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.semantica.pocketknife;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Call store with bounded memory use per distinct method call, for mocks that
+ * are invoked an unbounded number of times (e.g. in load tests). Every distinct
+ * method call only keeps an invocation counter, the sequence numbers of its
+ * first and last invocation and the information of at most the last
+ * historySize invocations.
+ *
+ * Strict verification is only possible for invocations that are still in the
+ * history of their method call.
+ */
+public class AggregateCallStore extends AbstractCallStore<AggregateCallStore.Aggregate> {
+
+	private final int historySize;
+
+	/**
+	 * Aggregated invocations of a single method call. The history is a ring buffer
+	 * holding the information of the last invocations in invocation order.
+	 */
+	static class Aggregate {
+
+		private int invocationCount;
+		private int firstSequenceNo;
+		private int lastSequenceNo;
+		private final MethodCallInformation[] history;
+		private int historyStart;
+		private int historyLength;
+
+		public Aggregate(int historySize, int firstSequenceNo) {
+			super();
+			this.history = new MethodCallInformation[historySize];
+			this.firstSequenceNo = firstSequenceNo;
+		}
+
+		public void add(int sequenceNo, MethodCallInformation methodCallInformation) {
+			invocationCount++;
+			// Concurrently recorded invocations may be added out of sequence number order
+			firstSequenceNo = Math.min(firstSequenceNo, sequenceNo);
+			lastSequenceNo = Math.max(lastSequenceNo, sequenceNo);
+			if (history.length > 0) {
+				MethodCallInformation information = methodCallInformation == null
+						? new MethodCallInformation(sequenceNo)
+						: methodCallInformation;
+				if (historyLength < history.length) {
+					history[(historyStart + historyLength++) % history.length] = information;
+				} else {
+					history[historyStart] = information;
+					historyStart = (historyStart + 1) % history.length;
+				}
+			}
+		}
+
+		public boolean remove(int sequenceNo) {
+			if (sequenceNo < firstSequenceNo || sequenceNo > lastSequenceNo) {
+				return false;
+			}
+			for (int i = 0; i < historyLength; i++) {
+				if (history[(historyStart + i) % history.length].getMethodInvocationSequenceNo() == sequenceNo) {
+					for (int j = i; j > 0; j--) {
+						history[(historyStart + j) % history.length] = history[(historyStart + j - 1)
+								% history.length];
+					}
+					history[historyStart] = null;
+					historyStart = (historyStart + 1) % history.length;
+					historyLength--;
+					invocationCount--;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public List<MethodCallInformation> getHistory() {
+			List<MethodCallInformation> historyInOrder = new ArrayList<>(historyLength);
+			for (int i = 0; i < historyLength; i++) {
+				historyInOrder.add(history[(historyStart + i) % history.length]);
+			}
+			return historyInOrder;
+		}
+
+	}
+
+	/**
+	 * Creates an aggregate call store without per-call history.
+	 */
+	public AggregateCallStore() {
+		this(0);
+	}
+
+	/**
+	 * Creates an aggregate call store.
+	 *
+	 * @param historySize the maximum number of invocations per method call of
+	 *                    which the information is retained
+	 */
+	public AggregateCallStore(int historySize) {
+		super();
+		if (historySize < 0) {
+			throw new IllegalArgumentException("History size cannot be negative.");
+		}
+		this.historySize = historySize;
+	}
+
+	public int getHistorySize() {
+		return historySize;
+	}
+
+	@Override
+	protected Aggregate newInvocations(MethodCall methodCall, int firstSequenceNo) {
+		return new Aggregate(historySize, firstSequenceNo);
+	}
+
+	@Override
+	public void add(Object method, Object[] args, int sequenceNo, MethodCallInformation methodCallInformation) {
+		getOrCreateInvocations(new MethodCall(method, args), sequenceNo).add(sequenceNo, methodCallInformation);
+	}
+
+	@Override
+	public int getInvocationCount(MethodCall storedMethodCall) {
+		Aggregate aggregate = calls.get(storedMethodCall);
+		return aggregate == null ? 0 : aggregate.invocationCount;
+	}
+
+	@Override
+	public boolean removeInvocation(MethodCall queryMethodCall, int sequenceNo) {
+		for (MethodCall candidate : getCandidates(queryMethodCall)) {
+			Aggregate aggregate = calls.get(candidate);
+			if (queryMethodCall.matches(candidate.getMethod(), candidate.getArgs()) && aggregate.remove(sequenceNo)) {
+				if (aggregate.invocationCount == 0) {
+					remove(candidate);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Collection<MethodCallInformation> getMethodCallInformation(MethodCall storedMethodCall) {
+		Aggregate aggregate = calls.get(storedMethodCall);
+		return aggregate == null ? Collections.emptyList() : aggregate.getHistory();
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.semantica.pocketknife;
+
+import java.util.Collection;
+
+/**
+ * Storage engine for the method invocations registered on a {@link Calls}
+ * instance. Implementations determine how much information is retained per
+ * invocation. Calls serializes all access to its store, so implementations do
+ * not need to be thread-safe.
+ */
+public interface CallStore {
+
+	/**
+	 * Stores an invocation.
+	 *
+	 * @param method                Method or method name
+	 * @param args                  invocation arguments
+	 * @param sequenceNo            invocation sequence number on the mock
+	 * @param methodCallInformation captured invocation information, null if no
+	 *                              stack trace was captured
+	 */
+	public void add(Object method, Object[] args, int sequenceNo, MethodCallInformation methodCallInformation);
+
+	/**
+	 * Finds the stored method call that matches the query, either exactly or using
+	 * the Hamcrest Matcher and Predicate arguments of the query.
+	 *
+	 * @param queryMethodCall the query
+	 * @return the stored method call or null if no stored method call matches
+	 * @throws IllegalArgumentException if the query matches more than one stored
+	 *                                  method call
+	 */
+	public MethodCall find(MethodCall queryMethodCall);
+
+	/**
+	 * @param storedMethodCall a method call returned by this store
+	 * @return the number of stored invocations of the method call
+	 */
+	public int getInvocationCount(MethodCall storedMethodCall);
+
+	/**
+	 * Removes all invocations of the method call.
+	 *
+	 * @param storedMethodCall a method call returned by this store
+	 */
+	public void remove(MethodCall storedMethodCall);
+
+	/**
+	 * Removes the invocation with the given sequence number if it is an
+	 * invocation of a method call matching the query.
+	 *
+	 * @param queryMethodCall the query
+	 * @param sequenceNo      invocation sequence number
+	 * @return true if the invocation was found and removed
+	 */
+	public boolean removeInvocation(MethodCall queryMethodCall, int sequenceNo);
+
+	public boolean isEmpty();
+
+	/**
+	 * @return the stored method calls
+	 */
+	public Collection<MethodCall> getMethodCalls();
+
+	/**
+	 * @param storedMethodCall a method call returned by this store
+	 * @return the retained information of the invocations of the method call,
+	 *         which may cover fewer invocations than its invocation count
+	 */
+	public Collection<MethodCallInformation> getMethodCallInformation(MethodCall storedMethodCall);
+
+	public void clear();
+
+}
@@ -1,28 +1,35 @@
 package com.semantica.pocketknife;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import org.hamcrest.Matcher;
-
 public class Calls {
 
 	// TODO: Allow registration and verification of arguments used with method call
 
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(Calls.class);
-	// Object can be: Method or String (method name)
-	private Map<MethodCall, List<MethodCallInformation>> calls = new HashMap<>();
+	public static final int DEFAULT_STACK_TRACE_DEPTH_LIMIT = 10;
+	private final CallStore callStore;
 	private final Class<?> keyClass;
-	private int sequentialCallNo = 0;
+	private final AtomicInteger sequentialCallNo = new AtomicInteger();
 	private int sequentialCallVerificationNo = 0;
+	private final RegistrationBuffers registrationBuffers;
+	private StackTraceCaptureMode stackTraceCaptureMode;
+	private int stackTraceDepthLimit = DEFAULT_STACK_TRACE_DEPTH_LIMIT;
+	private int reportCallLimit = Integer.MAX_VALUE;
+	private int reportStackFrameLimit = Integer.MAX_VALUE;
+	private volatile Epoch epoch;
+	// Generation of the epoch of which the calls are recorded, guarded by this
+	private int generation;
 
 	/**
 	 * Creates a Calls registry that is initialized to the given key class.
@@ -31,48 +38,237 @@ public class Calls {
 	 *                    either String.class or Method.class
 	 */
 	public Calls(Class<?> methodClass) {
+		this(methodClass, StackTraceCaptureMode.FULL);
+	}
+
+	/**
+	 * Creates a Calls registry that is initialized to the given key class and
+	 * captures stack traces of registered calls according to the given mode.
+	 *
+	 * @param methodClass           This class determines how methods will be
+	 *                              stored, can be either String.class or
+	 *                              Method.class
+	 * @param stackTraceCaptureMode determines how much of the call stack is
+	 *                              captured for every registered call
+	 */
+	public Calls(Class<?> methodClass, StackTraceCaptureMode stackTraceCaptureMode) {
+		this(methodClass, stackTraceCaptureMode, false);
+	}
+
+	/**
+	 * Creates a Calls registry that is initialized to the given key class and
+	 * optionally records calls concurrently.
+	 *
+	 * When recording concurrently, calls may be registered from any number of
+	 * threads. Every thread appends its registrations to its own buffer and
+	 * invocation sequence numbers are drawn from a lock-free counter. The buffers
+	 * are merged when calls are verified, so verification should only take place
+	 * after the registering threads are done invoking the mock. A buffer is also
+	 * merged once it is full, so the number of buffered calls stays bounded. The
+	 * call store may then receive the calls of different threads out of sequence
+	 * number order.
+	 *
+	 * @param methodClass           This class determines how methods will be
+	 *                              stored, can be either String.class or
+	 *                              Method.class
+	 * @param stackTraceCaptureMode determines how much of the call stack is
+	 *                              captured for every registered call
+	 * @param concurrentRecording   true if calls will be registered from multiple
+	 *                              threads
+	 */
+	public Calls(Class<?> methodClass, StackTraceCaptureMode stackTraceCaptureMode, boolean concurrentRecording) {
+		this(methodClass, stackTraceCaptureMode, concurrentRecording, new InvocationCallStore());
+	}
+
+	/**
+	 * Creates a Calls registry that is initialized to the given key class and
+	 * stores registered calls in the given call store.
+	 *
+	 * @param methodClass           This class determines how methods will be
+	 *                              stored, can be either String.class or
+	 *                              Method.class
+	 * @param stackTraceCaptureMode determines how much of the call stack is
+	 *                              captured for every registered call
+	 * @param concurrentRecording   true if calls will be registered from multiple
+	 *                              threads
+	 * @param callStore             storage engine for the registered calls, e.g.
+	 *                              an {@link AggregateCallStore} for mocks that
+	 *                              are invoked an unbounded number of times
+	 */
+	public Calls(Class<?> methodClass, StackTraceCaptureMode stackTraceCaptureMode, boolean concurrentRecording,
+			CallStore callStore) {
 		super();
 		if (methodClass != String.class && methodClass != Method.class) {
 			throw new IllegalArgumentException(
 					"Unsupported method class used. Use either String.class or Method.class.");
 		}
 		this.keyClass = methodClass;
+		this.registrationBuffers = concurrentRecording ? new RegistrationBuffers() : null;
+		if (callStore == null) {
+			throw new IllegalArgumentException("Call store cannot be null.");
+		}
+		this.callStore = callStore;
+		setStackTraceCaptureMode(stackTraceCaptureMode);
 	}
 
 	public void registerCall(Object... args) {
 		checkInitializedWithStringKeyClass();
 		traceLogMethodCall();
-		String methodName = getMethodName(1);
-		MethodCall methodCall = new MethodCall(methodName, args);
-		addStackTraceToCalls(methodCall, Thread.currentThread().getStackTrace());
+		String methodName = StackFrames.callerMethodName();
+		addCallToCalls(methodName, args);
 	}
 
 	public void registerCall(Method method, Object... args) {
 		checkInitializedWithMethodKeyClass();
-		MethodCall methodCall = new MethodCall(method, args);
-		addStackTraceToCalls(methodCall, Thread.currentThread().getStackTrace());
+		addCallToCalls(method, args);
 	}
 
-//sequentialCallNo++
-	private void addStackTraceToCalls(MethodCall methodCall, StackTraceElement[] stackTrace) {
-		List<MethodCallInformation> stackTraces = calls.get(methodCall);
-		if (stackTraces == null) {
-			stackTraces = new ArrayList<>();
+	private void addCallToCalls(Object method, Object[] args) {
+		discardCallsOfPreviousGenerations();
+		int sequenceNo = sequentialCallNo.getAndIncrement();
+		MethodCallInformation methodCallInformation = captureCallInformation(sequenceNo);
+		if (registrationBuffers == null) {
+			callStore.add(method, args, sequenceNo, methodCallInformation);
+		} else if (registrationBuffers.add(method, args, sequenceNo, methodCallInformation)) {
+			synchronized (this) {
+				mergeRegistrationBuffers();
+			}
+		}
+	}
+
+	private void mergeRegistrationBuffers() {
+		discardCallsOfPreviousGenerations();
+		if (registrationBuffers != null) {
+			for (RegistrationBuffers.Registration registration : registrationBuffers.drain()) {
+				callStore.add(registration.getMethod(), registration.getArgs(), registration.getSequenceNo(),
+						registration.getMethodCallInformation());
+			}
 		}
-		stackTraces.add(new MethodCallInformation(stackTrace, sequentialCallNo++));
-		calls.put(methodCall, stackTraces);
 	}
 
 	/**
-	 * Get the method name for a depth in call stack.
+	 * Attaches these calls to the given epoch, so that they are reset whenever the
+	 * epoch advances. Calls can be attached to a single epoch at a time. A reset
+	 * that is still owed to the current epoch is applied first, other calls
+	 * recorded so far are retained.
 	 *
-	 * @param depth depth in the call stack (0 means current method, 1 means
-	 *              invoking method, ...)
-	 * @return method name
+	 * @param epoch the epoch, or null to detach the calls from their epoch
+	 */
+	public synchronized void attachTo(Epoch epoch) {
+		discardCallsOfPreviousGenerations();
+		this.epoch = epoch;
+		if (epoch != null) {
+			generation = epoch.getGeneration();
+		}
+	}
+
+	public Epoch getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Resets the calls if their epoch advanced since they were last used. Only
+	 * synchronizes if it did.
 	 */
-	private static String getMethodName(final int depth) {
-		final StackTraceElement[] ste = Thread.currentThread().getStackTrace();
-		return ste[2 + depth].getMethodName();
+	private void discardCallsOfPreviousGenerations() {
+		Epoch epoch = this.epoch;
+		if (epoch != null && epoch.getGeneration() != generation) {
+			synchronized (this) {
+				int currentGeneration = epoch.getGeneration();
+				if (this.epoch == epoch && currentGeneration != generation) {
+					generation = currentGeneration;
+					reset();
+				}
+			}
+		}
+	}
+
+	public boolean isConcurrentRecording() {
+		return registrationBuffers != null;
+	}
+
+	public CallStore getCallStore() {
+		return callStore;
+	}
+
+	private MethodCallInformation captureCallInformation(int methodInvocationSequenceNo) {
+		switch (stackTraceCaptureMode) {
+		case FULL:
+			return new MethodCallInformation(StackFrames.callerFrames(Integer.MAX_VALUE), methodInvocationSequenceNo);
+		case DEPTH_LIMITED:
+			return new MethodCallInformation(StackFrames.callerFrames(stackTraceDepthLimit),
+					methodInvocationSequenceNo);
+		case LAZY:
+			return new MethodCallInformation(new Throwable(), methodInvocationSequenceNo);
+		case NONE:
+			return null;
+		default:
+			throw new IllegalStateException("Unknown stack trace capture mode set.");
+		}
+	}
+
+	public StackTraceCaptureMode getStackTraceCaptureMode() {
+		return stackTraceCaptureMode;
+	}
+
+	/**
+	 * Sets how much of the call stack is captured for calls that are registered
+	 * from now on.
+	 *
+	 * @param stackTraceCaptureMode the capture mode
+	 */
+	public void setStackTraceCaptureMode(StackTraceCaptureMode stackTraceCaptureMode) {
+		if (stackTraceCaptureMode == null) {
+			throw new IllegalArgumentException("Stack trace capture mode cannot be null.");
+		}
+		this.stackTraceCaptureMode = stackTraceCaptureMode;
+	}
+
+	public int getStackTraceDepthLimit() {
+		return stackTraceDepthLimit;
+	}
+
+	/**
+	 * Sets the maximum number of frames that is captured per registered call when
+	 * {@link StackTraceCaptureMode#DEPTH_LIMITED} is used.
+	 *
+	 * @param stackTraceDepthLimit maximum number of frames (at least 1)
+	 */
+	public void setStackTraceDepthLimit(int stackTraceDepthLimit) {
+		if (stackTraceDepthLimit < 1) {
+			throw new IllegalArgumentException("Stack trace depth limit should be at least 1.");
+		}
+		this.stackTraceDepthLimit = stackTraceDepthLimit;
+	}
+
+	public int getReportCallLimit() {
+		return reportCallLimit;
+	}
+
+	public int getReportStackFrameLimit() {
+		return reportStackFrameLimit;
+	}
+
+	/**
+	 * Limits the size of the reports that are logged when a verification fails.
+	 * Both limits are unbounded by default.
+	 *
+	 * @param reportCallLimit       maximum number of method calls, and of
+	 *                              invocations per method call, that are reported
+	 *                              (at least 1)
+	 * @param reportStackFrameLimit maximum number of frames reported per stack
+	 *                              trace (at least 1)
+	 */
+	public void setReportLimits(int reportCallLimit, int reportStackFrameLimit) {
+		checkReportLimits(reportCallLimit, reportStackFrameLimit);
+		this.reportCallLimit = reportCallLimit;
+		this.reportStackFrameLimit = reportStackFrameLimit;
+	}
+
+	private static void checkReportLimits(int callLimit, int stackFrameLimit) {
+		if (callLimit < 1 || stackFrameLimit < 1) {
+			throw new IllegalArgumentException("Report limits should be at least 1.");
+		}
 	}
 
 	public boolean verifyCall(int times, String methodName, Object... args) {
@@ -126,115 +322,55 @@ public class Calls {
 		return isSequentiallyCalled(methodCall);
 	}
 
-	private boolean isSequentiallyCalled(MethodCall queryMethodCall) {
-		boolean isSequentiallyCalled;
-		MethodCall foundMethodCall = getStoredExactMethodCall(queryMethodCall);
-		if (foundMethodCall != null) {
-			List<MethodCallInformation> callInfo = calls.get(foundMethodCall).stream()
-					.filter(info -> info.getMethodInvocationSequenceNo() == sequentialCallVerificationNo)
-					.collect(Collectors.toList());
-			if (callInfo.size() == 0) {
-				log.error("Registered invocations for method {}:{}{}", foundMethodCall.getMethod(),
-						System.lineSeparator(), getNewlineSeperatedCalls(
-								(entry) -> foundMethodCall.getMethod().equals(entry.getKey().getMethod()), true));
-				isSequentiallyCalled = false;
-			} else if (callInfo.size() != 1) {
-				log.error("Registered invocations for method {}:{}{}", foundMethodCall.getMethod(),
-						System.lineSeparator(), getNewlineSeperatedCalls(
-								(entry) -> foundMethodCall.getMethod().equals(entry.getKey().getMethod()), true));
-				throw new IllegalStateException(
-						"Multiple registered method calls found with the same invocation sequence number.");
-			} else {
-				sequentialCallVerificationNo++;
-				isSequentiallyCalled = true;
-			}
+	/**
+	 * Verifies that the invocation with the next expected sequence number matches
+	 * the query and removes that single invocation.
+	 */
+	private synchronized boolean isSequentiallyCalled(MethodCall queryMethodCall) {
+		mergeRegistrationBuffers();
+		int sequenceNo = sequentialCallVerificationNo;
+		if (callStore.removeInvocation(queryMethodCall, sequenceNo)) {
+			sequentialCallVerificationNo++;
+			return true;
 		} else {
-			isSequentiallyCalled = false;
-		}
-		if (isSequentiallyCalled) {
-			calls.remove(foundMethodCall);
+			Predicate<MethodCall> isQueriedMethod = (methodCall) -> queryMethodCall.getMethod()
+					.equals(methodCall.getMethod());
+			if (log.isErrorEnabled() && !callStore.isEmpty()
+					&& callStore.getMethodCalls().stream().anyMatch(isQueriedMethod)) {
+				log.error("Method {} was not invoked as {} invocation on this mock. Registered invocations:{}{}",
+						queryMethodCall.getMethod(), getInvocationCount(sequenceNo), System.lineSeparator(),
+						getNewlineSeperatedCalls(isQueriedMethod, true));
+			}
+			return false;
 		}
-		return isSequentiallyCalled;
 	}
 
-	private boolean isCalled(int expectedTimes, MethodCall queryMethodCall, boolean removeCall) {
+	private synchronized boolean isCalled(int expectedTimes, MethodCall queryMethodCall, boolean removeCall) {
+		mergeRegistrationBuffers();
 		boolean isCalled;
-		MethodCall foundMethodCall = getStoredExactMethodCall(queryMethodCall);
+		MethodCall foundMethodCall = callStore.find(queryMethodCall);
 		final MethodCall methodCall = foundMethodCall == null ? queryMethodCall : foundMethodCall;
-		Integer actualTimes = calls.get(methodCall) == null ? 0 : calls.get(methodCall).size();
-		if ((actualTimes == null || actualTimes == 0) && expectedTimes == 0) {
-			isCalled = true;
-		} else if (actualTimes != null && actualTimes == expectedTimes) {
+		int actualTimes = foundMethodCall == null ? 0 : callStore.getInvocationCount(foundMethodCall);
+		if (actualTimes == expectedTimes) {
 			isCalled = true;
 		} else {
 			isCalled = false;
-			log.error("Method {} was invoked {} {} x, while {} x was expected.", methodCall.getMethod(),
-					methodCall.getArgs().length == 0 ? "without arguments:"
-							: "with arguments [" + getCommaSeparatedArgs(methodCall) + "]:",
-					actualTimes == null ? 0 : actualTimes, expectedTimes);
-			log.info("Registered invocations for method {}:{}{}", methodCall.getMethod(), System.lineSeparator(),
-					getNewlineSeperatedCalls((entry) -> methodCall.getMethod().equals(entry.getKey().getMethod()),
-							true));
-		}
-		if (isCalled && removeCall) {
-			calls.remove(methodCall);
-		}
-		return isCalled;
-	}
-
-	private MethodCall getStoredExactMethodCall(MethodCall methodCall) {
-		Set<MethodCall> registeredMethodCalls = calls.keySet();
-		final MethodCall queryMethodCall = methodCall;
-		List<MethodCall> matchingCalls = registeredMethodCalls.stream()
-				.filter(registeredCall -> registeredCall.getMethod().equals(queryMethodCall.getMethod()))
-				.filter(registeredCall -> registeredCall.getArgs().length == queryMethodCall.getArgs().length)
-				.filter(registeredCall -> match(registeredCall, queryMethodCall)).collect(Collectors.toList());
-		if (matchingCalls.size() > 1) {
-			throw new IllegalArgumentException("The methodCall was ambiguously specified using matching arguments.");
-		} else if (matchingCalls.size() == 1) {
-			return matchingCalls.get(0);
-		} else {
-			return null;
-		}
-	}
-
-	private boolean match(MethodCall subject, MethodCall query) {
-		// TODO: Debug
-		boolean matches = true;
-		for (int i = 0; i < query.getArgs().length; i++) {
-			Object queryArg = query.getArgs()[i];
-			Object subjectArg = subject.getArgs()[i];
-			if (queryArg instanceof Matcher) {
-				Matcher<?> matcher = (Matcher<?>) queryArg;
-				matches &= matcher.matches(subjectArg);
-			} else if (queryArg instanceof Predicate) {
-				Predicate<?> predicate = (Predicate<?>) queryArg;
-				matches &= predicateMatches(predicate, subjectArg);
-			} else {
-				if (subjectArg != null && queryArg != null && subjectArg.getClass().isArray()
-						&& queryArg.getClass().isArray()) {
-					matches &= Arrays.deepEquals((Object[]) queryArg, (Object[]) subjectArg);
-				} else {
-					matches &= queryArg == null ? queryArg == subjectArg : queryArg.equals(subjectArg);
-				}
+			if (log.isErrorEnabled()) {
+				log.error("Method {} was invoked {} {} x, while {} x was expected.", methodCall.getMethod(),
+						methodCall.getArgs().length == 0 ? "without arguments:"
+								: "with arguments [" + getCommaSeparatedArgs(methodCall) + "]:",
+						actualTimes, expectedTimes);
 			}
-		}
-		return matches;
-	}
-
-	private <T> boolean predicateMatches(Predicate<?> predicate, T subject) {
-		@SuppressWarnings("unchecked")
-		Predicate<T> applicablePredicate = (Predicate<T>) predicate;
-		return applicablePredicate.test(subject);
-	}
-
-	private boolean anyMatcherPresent(Object[] args) {
-		for (Object arg : args) {
-			if (arg instanceof Matcher || arg instanceof Predicate) {
-				return true;
+			if (log.isInfoEnabled()) {
+				log.info("Registered invocations for method {}:{}{}", methodCall.getMethod(), System.lineSeparator(),
+						getNewlineSeperatedCalls(
+								(registeredCall) -> methodCall.getMethod().equals(registeredCall.getMethod()), true));
 			}
 		}
-		return false;
+		if (isCalled && removeCall && foundMethodCall != null) {
+			callStore.remove(foundMethodCall);
+		}
+		return isCalled;
 	}
 
 	private String getCommaSeparatedArgs(MethodCall methodCall) {
@@ -251,48 +387,157 @@ public class Calls {
 		return verifyNoMoreMethodInvocations(true);
 	}
 
-	public boolean verifyNoMoreMethodInvocations(boolean printStackTrace) {
-		if (calls.isEmpty()) {
+	/**
+	 * Verifies that no more method invocations remain, like
+	 * {@link #verifyNoMoreMethodInvocations(boolean)}, and returns the report of
+	 * the remaining calls, which is also logged if error logging is enabled. The
+	 * report is rendered once, bounded by the report limits. Use
+	 * {@link #verifyNoMoreMethodInvocations(boolean)} if the report is not needed.
+	 *
+	 * @param printStackTrace whether the stack traces of the invocations are
+	 *                        reported
+	 * @return the report of the remaining calls, or null if no calls remain
+	 */
+	public synchronized String reportRemainingCalls(boolean printStackTrace) {
+		mergeRegistrationBuffers();
+		if (callStore.isEmpty()) {
+			return null;
+		}
+		String remainingCalls = getNewlineSeperatedCalls((methodCall) -> true, printStackTrace);
+		if (log.isErrorEnabled()) {
+			log.error("Calls remaining (that were not removed):{}{}", System.lineSeparator(), remainingCalls);
+		}
+		return remainingCalls;
+	}
+
+	public synchronized boolean verifyNoMoreMethodInvocations(boolean printStackTrace) {
+		mergeRegistrationBuffers();
+		if (callStore.isEmpty()) {
 			return true;
 		} else {
-			log.error("Calls remaining (that were not removed):{}{}", System.lineSeparator(), getNewlineSeperatedCalls(
-					(Predicate<Entry<MethodCall, List<MethodCallInformation>>>) (entry) -> true, printStackTrace));
+			if (log.isErrorEnabled()) {
+				log.error("Calls remaining (that were not removed):{}{}", System.lineSeparator(),
+						getNewlineSeperatedCalls((methodCall) -> true, printStackTrace));
+			}
 			return false;
 		}
 	}
 
-	private String getNewlineSeperatedCalls(Predicate<Entry<MethodCall, List<MethodCallInformation>>> predicate,
-			boolean printStackTrace) {
-		if (calls.isEmpty()) {
-			return "";
-		} else {
-			return calls.entrySet().stream().filter(predicate)
-					.map(entry -> " * Method: " + entry.getKey().getMethod() + ", Args: ["
-							+ getCommaSeparatedArgs(entry.getKey()) + "], Times invoked: " + entry.getValue().size()
-							+ (printStackTrace
-									? ", Stack traces:" + System.lineSeparator() + stackTracesAsString(entry.getValue())
-									: "."))
-					.collect(Collectors.joining(System.lineSeparator()));
+	/**
+	 * Writes a report of the calls that were registered and not (yet) removed.
+	 * The report is streamed to its destination, its size is bounded by the
+	 * given limits.
+	 *
+	 * @param out             the report destination
+	 * @param printStackTrace whether the stack traces of the invocations are
+	 *                        reported
+	 * @param callLimit       maximum number of method calls, and of invocations
+	 *                        per method call, that are reported (at least 1)
+	 * @param stackFrameLimit maximum number of frames reported per stack trace (at
+	 *                        least 1)
+	 * @throws IOException if writing to the destination fails
+	 */
+	public synchronized void writeReport(Appendable out, boolean printStackTrace, int callLimit, int stackFrameLimit)
+			throws IOException {
+		checkReportLimits(callLimit, stackFrameLimit);
+		mergeRegistrationBuffers();
+		appendCalls(out, (methodCall) -> true, printStackTrace, callLimit, stackFrameLimit);
+	}
+
+	/**
+	 * Writes a report of the calls that were registered and not (yet) removed to a
+	 * file, see {@link #writeReport(Appendable, boolean, int, int)}.
+	 *
+	 * @param file the report file, which is overwritten if it exists
+	 */
+	public void writeReport(Path file, boolean printStackTrace, int callLimit, int stackFrameLimit)
+			throws IOException {
+		checkReportLimits(callLimit, stackFrameLimit);
+		try (Writer writer = Files.newBufferedWriter(file)) {
+			writeReport(writer, printStackTrace, callLimit, stackFrameLimit);
 		}
 	}
 
-	private String stackTracesAsString(List<MethodCallInformation> stackTraces) {
+	private String getNewlineSeperatedCalls(Predicate<MethodCall> predicate, boolean printStackTrace) {
 		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < stackTraces.size(); i++) {
-			StackTraceElement[] stackTrace = stackTraces.get(i).getStackTraceElements();
-			String tracePrefix = (i < stackTraces.size() - 1 ? " |" : "  ");
-			sb.append(" |").append("__[ StackTrace for method call[").append(i)
-					.append("] (" + getInvocationCount(stackTraces.get(i).getMethodInvocationSequenceNo())
-							+ " invocation on this mock): ]")
-					.append(System.lineSeparator()).append(tracePrefix)
-					.append(Arrays.stream(stackTrace).skip(2)
-							.map(stackTraceElement -> "\t-> " + stackTraceElement.toString())
-							.collect(Collectors.joining(System.lineSeparator() + tracePrefix)))
-					.append(System.lineSeparator());
+		try {
+			appendCalls(sb, predicate, printStackTrace, reportCallLimit, reportStackFrameLimit);
+		} catch (IOException e) {
+			// StringBuilder does not throw IOExceptions
+			throw new UncheckedIOException(e);
 		}
 		return sb.toString();
 	}
 
+	private void appendCalls(Appendable out, Predicate<MethodCall> predicate, boolean printStackTrace, int callLimit,
+			int stackFrameLimit) throws IOException {
+		if (callStore.isEmpty()) {
+			return;
+		}
+		int reportedCalls = 0;
+		int omittedCalls = 0;
+		for (MethodCall methodCall : callStore.getMethodCalls()) {
+			if (!predicate.test(methodCall)) {
+				continue;
+			} else if (reportedCalls == callLimit) {
+				omittedCalls++;
+				continue;
+			}
+			if (reportedCalls++ > 0) {
+				out.append(System.lineSeparator());
+			}
+			out.append(" * Method: ").append(String.valueOf(methodCall.getMethod())).append(", Args: [")
+					.append(getCommaSeparatedArgs(methodCall)).append("], Times invoked: ")
+					.append(String.valueOf(callStore.getInvocationCount(methodCall)));
+			if (printStackTrace) {
+				out.append(", Stack traces:").append(System.lineSeparator());
+				appendStackTraces(out, callStore.getMethodCallInformation(methodCall), callLimit, stackFrameLimit);
+			} else {
+				out.append(".");
+			}
+		}
+		if (omittedCalls > 0) {
+			out.append(System.lineSeparator()).append(" * (").append(String.valueOf(omittedCalls))
+					.append(" more method calls not reported)");
+		}
+	}
+
+	private void appendStackTraces(Appendable out, Collection<MethodCallInformation> stackTraces, int callLimit,
+			int stackFrameLimit) throws IOException {
+		int reportedStackTraces = Math.min(stackTraces.size(), callLimit);
+		int i = 0;
+		for (MethodCallInformation methodCallInformation : stackTraces) {
+			if (i == reportedStackTraces) {
+				break;
+			}
+			String tracePrefix = (i < stackTraces.size() - 1 ? " |" : "  ");
+			out.append(" |").append("__[ StackTrace for method call[").append(String.valueOf(i++)).append("] (")
+					.append(getInvocationCount(methodCallInformation.getMethodInvocationSequenceNo()))
+					.append(" invocation on this mock): ]").append(System.lineSeparator());
+			appendStackTrace(out, methodCallInformation.getStackTraceElements(), tracePrefix, stackFrameLimit);
+		}
+		if (reportedStackTraces < stackTraces.size()) {
+			out.append(" |__[ ").append(String.valueOf(stackTraces.size() - reportedStackTraces))
+					.append(" more invocations not reported ]").append(System.lineSeparator());
+		}
+	}
+
+	private void appendStackTrace(Appendable out, StackTraceElement[] stackTrace, String tracePrefix,
+			int stackFrameLimit) throws IOException {
+		if (stackTrace.length == 0) {
+			out.append(tracePrefix).append("\t-> (stack trace not captured)").append(System.lineSeparator());
+			return;
+		}
+		int reportedFrames = Math.min(stackTrace.length, stackFrameLimit);
+		for (int frame = 0; frame < reportedFrames; frame++) {
+			out.append(tracePrefix).append("\t-> ").append(stackTrace[frame].toString()).append(System.lineSeparator());
+		}
+		if (reportedFrames < stackTrace.length) {
+			out.append(tracePrefix).append("\t-> ... ").append(String.valueOf(stackTrace.length - reportedFrames))
+					.append(" more frames").append(System.lineSeparator());
+		}
+	}
+
 	private String getInvocationCount(int methodInvocationSequenceNoStartingFromZero) {
 		int methodInvocationSequenceNoStartingFromOne = methodInvocationSequenceNoStartingFromZero + 1;
 		if (methodInvocationSequenceNoStartingFromOne % 10 == 1 && methodInvocationSequenceNoStartingFromOne != 11) {
@@ -308,9 +553,16 @@ public class Calls {
 		}
 	}
 
+	/**
+	 * Trace logs the mock method that is invoked and its caller. The call stack is
+	 * only inspected when trace logging is enabled.
+	 */
 	public static void traceLogMethodCall() {
-		log.trace("In method: " + Thread.currentThread().getStackTrace()[3] + ", called from: "
-				+ Thread.currentThread().getStackTrace()[4]);
+		if (log.isTraceEnabled()) {
+			StackTraceElement[] callerFrames = StackFrames.callerFrames(2);
+			log.trace("In method: {}, called from: {}", callerFrames.length > 0 ? callerFrames[0] : null,
+					callerFrames.length > 1 ? callerFrames[1] : null);
+		}
 	}
 
 	private void checkInitializedWithStringKeyClass() {
@@ -325,9 +577,16 @@ public class Calls {
 		}
 	}
 
-	public void reset() {
-		calls.clear();
-		sequentialCallNo = 0;
+	/**
+	 * Removes all registered calls. Takes constant time: the storage of the calls
+	 * is released rather than cleared.
+	 */
+	public synchronized void reset() {
+		if (registrationBuffers != null) {
+			registrationBuffers.clear();
+		}
+		callStore.clear();
+		sequentialCallNo.set(0);
 		sequentialCallVerificationNo = 0;
 	}
 
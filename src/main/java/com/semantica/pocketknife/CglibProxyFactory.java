@@ -0,0 +1,57 @@
+package com.semantica.pocketknife;
+
+import java.lang.reflect.Modifier;
+
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+import net.sf.cglib.proxy.MethodInterceptor;
+
+/**
+ * Creates proxies of (non-final) classes and interfaces with cglib. Instances
+ * are created with Objenesis, so the proxied class needs no no-args
+ * constructor.
+ */
+public class CglibProxyFactory implements ProxyFactory {
+
+	private static final Objenesis OBJENESIS = new ObjenesisStd();
+	/**
+	 * Proxy classes per proxied class. The generated classes do not hold any
+	 * callback of their own, every proxy instance is bound to its own
+	 * interceptor, so a proxy class can be shared by all proxies of the proxied
+	 * class. Using a ClassValue ties the lifetime of the entries to the proxied
+	 * classes (and their class loaders).
+	 */
+	private static final ClassValue<Class<?>> PROXY_CLASSES = new ClassValue<Class<?>>() {
+		@Override
+		protected Class<?> computeValue(Class<?> proxiedClass) {
+			Enhancer enhancer = new Enhancer();
+			enhancer.setUseCache(false);
+			enhancer.setSuperclass(proxiedClass);
+			enhancer.setCallbackType(MethodInterceptor.class);
+			return enhancer.createClass();
+		}
+	};
+
+	@Override
+	public boolean supports(Class<?> proxiedClass) {
+		return !proxiedClass.isPrimitive() && !proxiedClass.isArray() && !Modifier.isFinal(proxiedClass.getModifiers());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T createProxy(Class<T> proxiedClass, ProxyInterceptor interceptor) {
+		if (!supports(proxiedClass)) {
+			throw new IllegalArgumentException("Cannot create a cglib proxy of " + proxiedClass.getName() + ".");
+		}
+		// Objenesis skips the binding of callbacks by the constructor, so the
+		// interceptor is set on the instance.
+		T proxy = (T) OBJENESIS.newInstance(PROXY_CLASSES.get(proxiedClass));
+		((Factory) proxy).setCallback(0,
+				(MethodInterceptor) (obj, method, args, methodProxy) -> interceptor.intercept(obj, method, args));
+		return proxy;
+	}
+
+}
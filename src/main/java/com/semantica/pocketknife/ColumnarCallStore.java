@@ -0,0 +1,312 @@
+package com.semantica.pocketknife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Call store that writes invocations into a columnar log instead of allocating
+ * objects per invocation, for call-heavy test suites. Every invocation occupies
+ * one row: an interned method id, its sequence number, its arguments array and
+ * (only when stack traces are captured) its method call information.
+ *
+ * Registration is cheap. Queries for stored method calls use an index of the
+ * rows of every distinct method call, which is built in one pass over the log
+ * when first needed and kept up to date from then on. Rows are appended in
+ * sequence number order, so strict verification uses a binary search. Removed
+ * invocations are marked and compacted away once they make up the larger part
+ * of the log, which also restores the order of invocations that were merged
+ * late.
+ */
+public class ColumnarCallStore implements CallStore {
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int REMOVED = -1;
+
+	private Map<Object, Integer> methodIds = new HashMap<>();
+	private List<Object> methods = new ArrayList<>();
+	private int[] methodIdColumn = new int[INITIAL_CAPACITY];
+	private int[] sequenceNoColumn = new int[INITIAL_CAPACITY];
+	private Object[][] argsColumn = new Object[INITIAL_CAPACITY][];
+	// Only allocated once method call information (a stack trace) is stored
+	private MethodCallInformation[] informationColumn;
+	private int rows;
+	private int removedRows;
+	// Rows are only out of sequence number order when a concurrently registered
+	// invocation was merged late
+	private boolean sortedBySequenceNo = true;
+	// Rows of every distinct method call in order of first invocation, null
+	// until first queried and after compaction
+	private Map<MethodCall, Rows> rowsByMethodCall;
+
+	/**
+	 * Rows of a distinct method call. Removed rows are not taken out, but skipped
+	 * until the index is rebuilt after compaction: rows are never reused before
+	 * that, and compaction bounds the number of removed rows.
+	 */
+	private static class Rows {
+
+		private int[] rows = new int[1];
+		private int size;
+		private int invocationCount;
+
+		private void add(int row) {
+			if (size == rows.length) {
+				rows = Arrays.copyOf(rows, 2 * size);
+			}
+			rows[size++] = row;
+			invocationCount++;
+		}
+
+	}
+
+	@Override
+	public void add(Object method, Object[] args, int sequenceNo, MethodCallInformation methodCallInformation) {
+		if (rows == methodIdColumn.length) {
+			grow();
+		}
+		if (rows > 0 && sequenceNo < sequenceNoColumn[rows - 1]) {
+			sortedBySequenceNo = false;
+		}
+		methodIdColumn[rows] = internMethod(method);
+		sequenceNoColumn[rows] = sequenceNo;
+		argsColumn[rows] = args;
+		if (methodCallInformation != null) {
+			if (informationColumn == null) {
+				informationColumn = new MethodCallInformation[methodIdColumn.length];
+			}
+			informationColumn[rows] = methodCallInformation;
+		}
+		if (rowsByMethodCall != null) {
+			indexRow(rows);
+		}
+		rows++;
+	}
+
+	private int internMethod(Object method) {
+		Integer methodId = methodIds.get(method);
+		if (methodId == null) {
+			methodId = methods.size();
+			methods.add(method);
+			methodIds.put(method, methodId);
+		}
+		return methodId;
+	}
+
+	private void grow() {
+		int capacity = 2 * methodIdColumn.length;
+		methodIdColumn = Arrays.copyOf(methodIdColumn, capacity);
+		sequenceNoColumn = Arrays.copyOf(sequenceNoColumn, capacity);
+		argsColumn = Arrays.copyOf(argsColumn, capacity);
+		if (informationColumn != null) {
+			informationColumn = Arrays.copyOf(informationColumn, capacity);
+		}
+	}
+
+	private Map<MethodCall, Rows> getRowsByMethodCall() {
+		if (rowsByMethodCall == null) {
+			rowsByMethodCall = new LinkedHashMap<>();
+			for (int row = 0; row < rows; row++) {
+				if (methodIdColumn[row] != REMOVED) {
+					indexRow(row);
+				}
+			}
+		}
+		return rowsByMethodCall;
+	}
+
+	private void indexRow(int row) {
+		rowsByMethodCall.computeIfAbsent(getMethodCall(row), methodCall -> new Rows()).add(row);
+	}
+
+	private MethodCall getMethodCall(int row) {
+		return new MethodCall(methods.get(methodIdColumn[row]), argsColumn[row]);
+	}
+
+	@Override
+	public MethodCall find(MethodCall queryMethodCall) {
+		if (!queryMethodCall.hasMatchingArguments()) {
+			return getRowsByMethodCall().containsKey(queryMethodCall) ? queryMethodCall : null;
+		}
+		// Matching arguments are evaluated once per distinct method call
+		MethodCall matchingCall = null;
+		for (MethodCall storedMethodCall : getRowsByMethodCall().keySet()) {
+			if (queryMethodCall.matches(storedMethodCall.getMethod(), storedMethodCall.getArgs())) {
+				if (matchingCall != null) {
+					throw new IllegalArgumentException(
+							"The methodCall was ambiguously specified using matching arguments.");
+				}
+				matchingCall = storedMethodCall;
+			}
+		}
+		return matchingCall;
+	}
+
+	@Override
+	public int getInvocationCount(MethodCall storedMethodCall) {
+		Rows rows = getRowsByMethodCall().get(storedMethodCall);
+		return rows == null ? 0 : rows.invocationCount;
+	}
+
+	@Override
+	public void remove(MethodCall storedMethodCall) {
+		Rows rows = getRowsByMethodCall().remove(storedMethodCall);
+		if (rows != null) {
+			for (int i = 0; i < rows.size; i++) {
+				if (methodIdColumn[rows.rows[i]] != REMOVED) {
+					clearRow(rows.rows[i]);
+				}
+			}
+			compactIfSparse();
+		}
+	}
+
+	@Override
+	public boolean removeInvocation(MethodCall queryMethodCall, int sequenceNo) {
+		int row = findRow(sequenceNo);
+		if (row >= 0 && methodIdColumn[row] != REMOVED
+				&& queryMethodCall.matches(methods.get(methodIdColumn[row]), argsColumn[row])) {
+			if (rowsByMethodCall != null) {
+				MethodCall storedMethodCall = getMethodCall(row);
+				if (--rowsByMethodCall.get(storedMethodCall).invocationCount == 0) {
+					rowsByMethodCall.remove(storedMethodCall);
+				}
+			}
+			clearRow(row);
+			compactIfSparse();
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	private int findRow(int sequenceNo) {
+		if (sortedBySequenceNo) {
+			return Arrays.binarySearch(sequenceNoColumn, 0, rows, sequenceNo);
+		}
+		for (int row = 0; row < rows; row++) {
+			if (sequenceNoColumn[row] == sequenceNo) {
+				return row;
+			}
+		}
+		return -1;
+	}
+
+	private void clearRow(int row) {
+		methodIdColumn[row] = REMOVED;
+		argsColumn[row] = null;
+		if (informationColumn != null) {
+			informationColumn[row] = null;
+		}
+		removedRows++;
+	}
+
+	/**
+	 * Removes the rows of removed invocations once they make up the larger part
+	 * of the log. The remaining rows are put in sequence number order, if they
+	 * were not.
+	 */
+	private void compactIfSparse() {
+		if (removedRows > INITIAL_CAPACITY && removedRows > rows / 2) {
+			int liveRows = 0;
+			for (int row = 0; row < rows; row++) {
+				if (methodIdColumn[row] != REMOVED) {
+					methodIdColumn[liveRows] = methodIdColumn[row];
+					sequenceNoColumn[liveRows] = sequenceNoColumn[row];
+					argsColumn[liveRows] = argsColumn[row];
+					if (informationColumn != null) {
+						informationColumn[liveRows] = informationColumn[row];
+					}
+					liveRows++;
+				}
+			}
+			Arrays.fill(argsColumn, liveRows, rows, null);
+			if (informationColumn != null) {
+				Arrays.fill(informationColumn, liveRows, rows, null);
+			}
+			rows = liveRows;
+			removedRows = 0;
+			rowsByMethodCall = null;
+			if (!sortedBySequenceNo) {
+				sortBySequenceNo();
+			}
+		}
+	}
+
+	private void sortBySequenceNo() {
+		// Sorts the row numbers by sequence number, then reorders the columns
+		long[] order = new long[rows];
+		for (int row = 0; row < rows; row++) {
+			order[row] = (long) sequenceNoColumn[row] << 32 | row;
+		}
+		Arrays.sort(order);
+		int[] sortedMethodIdColumn = new int[methodIdColumn.length];
+		int[] sortedSequenceNoColumn = new int[sequenceNoColumn.length];
+		Object[][] sortedArgsColumn = new Object[argsColumn.length][];
+		MethodCallInformation[] sortedInformationColumn = informationColumn == null ? null
+				: new MethodCallInformation[informationColumn.length];
+		for (int i = 0; i < rows; i++) {
+			int row = (int) order[i];
+			sortedMethodIdColumn[i] = methodIdColumn[row];
+			sortedSequenceNoColumn[i] = sequenceNoColumn[row];
+			sortedArgsColumn[i] = argsColumn[row];
+			if (informationColumn != null) {
+				sortedInformationColumn[i] = informationColumn[row];
+			}
+		}
+		methodIdColumn = sortedMethodIdColumn;
+		sequenceNoColumn = sortedSequenceNoColumn;
+		argsColumn = sortedArgsColumn;
+		informationColumn = sortedInformationColumn;
+		sortedBySequenceNo = true;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return rows == removedRows;
+	}
+
+	@Override
+	public Collection<MethodCall> getMethodCalls() {
+		return Collections.unmodifiableSet(getRowsByMethodCall().keySet());
+	}
+
+	@Override
+	public Collection<MethodCallInformation> getMethodCallInformation(MethodCall storedMethodCall) {
+		Rows rows = getRowsByMethodCall().get(storedMethodCall);
+		if (rows == null) {
+			return Collections.emptyList();
+		}
+		List<MethodCallInformation> methodCallInformation = new ArrayList<>(rows.invocationCount);
+		for (int i = 0; i < rows.size; i++) {
+			int row = rows.rows[i];
+			if (methodIdColumn[row] == REMOVED) {
+				continue;
+			}
+			methodCallInformation.add(informationColumn == null || informationColumn[row] == null
+					? new MethodCallInformation(sequenceNoColumn[row])
+					: informationColumn[row]);
+		}
+		return methodCallInformation;
+	}
+
+	@Override
+	public void clear() {
+		methodIds = new HashMap<>();
+		methods = new ArrayList<>();
+		methodIdColumn = new int[INITIAL_CAPACITY];
+		sequenceNoColumn = new int[INITIAL_CAPACITY];
+		argsColumn = new Object[INITIAL_CAPACITY][];
+		informationColumn = null;
+		rows = 0;
+		removedRows = 0;
+		sortedBySequenceNo = true;
+		rowsByMethodCall = null;
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.semantica.pocketknife;
+
+/**
+ * Uses JDK proxies for interfaces and cglib proxies for classes.
+ */
+class DefaultProxyFactory implements ProxyFactory {
+
+	static final DefaultProxyFactory INSTANCE = new DefaultProxyFactory();
+	private final ProxyFactory interfaceProxyFactory = new JdkProxyFactory();
+	private final ProxyFactory classProxyFactory = new CglibProxyFactory();
+
+	@Override
+	public boolean supports(Class<?> proxiedClass) {
+		return interfaceProxyFactory.supports(proxiedClass) || classProxyFactory.supports(proxiedClass);
+	}
+
+	@Override
+	public <T> T createProxy(Class<T> proxiedClass, ProxyInterceptor interceptor) {
+		if (interfaceProxyFactory.supports(proxiedClass)) {
+			return interfaceProxyFactory.createProxy(proxiedClass, interceptor);
+		} else {
+			return classProxyFactory.createProxy(proxiedClass, interceptor);
+		}
+	}
+
+}
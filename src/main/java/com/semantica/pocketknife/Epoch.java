@@ -0,0 +1,28 @@
+package com.semantica.pocketknife;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generation counter that is shared by the {@link Calls} instances attached to
+ * it, e.g. the calls of all mocks of a {@link MocksRegistry}. Advancing the
+ * epoch resets all attached calls at once: each of them discards the calls of
+ * previous generations the next time it is used, so the cost of advancing does
+ * not depend on the number of attached calls or recorded invocations.
+ */
+public class Epoch {
+
+	private final AtomicInteger generation = new AtomicInteger();
+
+	public int getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Starts a new generation, after which the attached calls no longer report
+	 * the invocations recorded before.
+	 */
+	public void advance() {
+		generation.incrementAndGet();
+	}
+
+}
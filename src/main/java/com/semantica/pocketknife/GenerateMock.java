@@ -0,0 +1,33 @@
+package com.semantica.pocketknife;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates, at compile time, the classes that are otherwise generated at
+ * runtime for the annotated interface or (non-final, statically nested) class
+ * {@code Type}:
+ * <ul>
+ * <li>{@code TypeProxy}: a proxy that passes every method invocation to a
+ * {@link ProxyInterceptor}. Its {@code FACTORY} is a {@link ProxyFactory} for
+ * the annotated type.</li>
+ * <li>{@code TypeRecorder}: a {@link MethodRecorder} of the annotated type that
+ * uses the generated proxy.</li>
+ * <li>{@code TypeMock}: a {@link Mock} that registers every method invocation
+ * on its {@link Calls} instance and returns default values. Subclass it to add
+ * mock behaviour.</li>
+ * </ul>
+ * The classes are generated in the package of the annotated type. The names of
+ * enclosing types are prepended (separated by an underscore) for nested types.
+ * A class needs a non-private no-args constructor. The annotated type cannot
+ * declare the methods {@code getCalls()} and {@code reset()} of {@link Mock}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateMock {
+
+}
@@ -0,0 +1,90 @@
+package com.semantica.pocketknife;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates primitive identifier values. Every thread draws sequence numbers
+ * from its own block, so allocation only contends between threads once per
+ * block, and blocks are handed out once, so sequence numbers are unique within
+ * the JVM. Blocks are small, so that sequence numbers stay dense and map onto
+ * distinct values of the types with a small range.
+ *
+ * Sequence numbers are mapped onto a reserved range of values per primitive
+ * type that is unlikely to be used as a real argument value: the most negative
+ * integral values, characters of the Unicode private use area and negative
+ * subnormal floating point values. The ranges of the integral types are
+ * disjoint from the non-negative values and are only reused once they are
+ * exhausted, which for byte (64 values) and boolean (2 values) is inevitable.
+ */
+class IdentifierAllocator {
+
+	private static final int BLOCK_SIZE = 1 << 6;
+	private static final AtomicLong nextBlock = new AtomicLong();
+	private static final ThreadLocal<IdentifierAllocator> allocators = ThreadLocal
+			.withInitial(IdentifierAllocator::new);
+
+	private static final int BYTE_RANGE = 1 << 6;
+	private static final int SHORT_RANGE = 1 << 14;
+	private static final int INT_RANGE = 1 << 30;
+	private static final long LONG_RANGE = 1L << 62;
+	private static final char FIRST_PRIVATE_USE_CHAR = '\uE000';
+	private static final int CHAR_RANGE = '\uF8FF' - FIRST_PRIVATE_USE_CHAR + 1;
+	private static final int FLOAT_RANGE = 1 << 22;
+	private static final long DOUBLE_RANGE = 1L << 51;
+
+	private long next;
+	private long limit;
+
+	static IdentifierAllocator get() {
+		return allocators.get();
+	}
+
+	private long nextSequenceNo() {
+		if (next == limit) {
+			next = nextBlock.getAndIncrement() * BLOCK_SIZE;
+			limit = next + BLOCK_SIZE;
+		}
+		return next++;
+	}
+
+	public boolean nextBoolean() {
+		return (nextSequenceNo() & 1) == 0;
+	}
+
+	public byte nextByte() {
+		return (byte) (Byte.MIN_VALUE + nextSequenceNo() % BYTE_RANGE);
+	}
+
+	public short nextShort() {
+		return (short) (Short.MIN_VALUE + nextSequenceNo() % SHORT_RANGE);
+	}
+
+	public char nextChar() {
+		return (char) (FIRST_PRIVATE_USE_CHAR + nextSequenceNo() % CHAR_RANGE);
+	}
+
+	public int nextInt() {
+		return (int) (Integer.MIN_VALUE + nextSequenceNo() % INT_RANGE);
+	}
+
+	public long nextLong() {
+		return Long.MIN_VALUE + nextSequenceNo() % LONG_RANGE;
+	}
+
+	/**
+	 * @return a negative subnormal value (the sign bit set, a zero exponent and a
+	 *         non-zero significand)
+	 */
+	public float nextFloat() {
+		return Float.intBitsToFloat(Integer.MIN_VALUE | (int) (1 + nextSequenceNo() % FLOAT_RANGE));
+	}
+
+	/**
+	 * @return a negative subnormal value (the sign bit set, a zero exponent and a
+	 *         non-zero significand)
+	 */
+	public double nextDouble() {
+		return Double.longBitsToDouble(Long.MIN_VALUE | (1 + nextSequenceNo() % DOUBLE_RANGE));
+	}
+
+}
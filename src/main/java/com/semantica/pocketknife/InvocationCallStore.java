@@ -0,0 +1,105 @@
+package com.semantica.pocketknife;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+
+/**
+ * Call store that retains the information of every single invocation (default).
+ */
+public class InvocationCallStore extends AbstractCallStore<Deque<MethodCallInformation>> {
+
+	// Registered method calls indexed by their invocation sequence number, used
+	// for strict verification
+	private MethodCall[] callsBySequenceNo = new MethodCall[16];
+
+	@Override
+	protected Deque<MethodCallInformation> newInvocations(MethodCall methodCall, int firstSequenceNo) {
+		return new ArrayDeque<>();
+	}
+
+	@Override
+	public void add(Object method, Object[] args, int sequenceNo, MethodCallInformation methodCallInformation) {
+		MethodCall methodCall = new MethodCall(method, args);
+		getOrCreateInvocations(methodCall, sequenceNo).add(
+				methodCallInformation == null ? new MethodCallInformation(sequenceNo) : methodCallInformation);
+		if (sequenceNo >= callsBySequenceNo.length) {
+			callsBySequenceNo = Arrays.copyOf(callsBySequenceNo,
+					Math.max(2 * callsBySequenceNo.length, sequenceNo + 1));
+		}
+		callsBySequenceNo[sequenceNo] = methodCall;
+	}
+
+	@Override
+	public int getInvocationCount(MethodCall storedMethodCall) {
+		Deque<MethodCallInformation> callInfo = calls.get(storedMethodCall);
+		return callInfo == null ? 0 : callInfo.size();
+	}
+
+	/**
+	 * Looks up the invocation by its sequence number, so every strict
+	 * verification step takes constant time.
+	 */
+	@Override
+	public boolean removeInvocation(MethodCall queryMethodCall, int sequenceNo) {
+		MethodCall registeredCall = sequenceNo < callsBySequenceNo.length ? callsBySequenceNo[sequenceNo] : null;
+		Deque<MethodCallInformation> callInfo = registeredCall == null ? null : calls.get(registeredCall);
+		if (callInfo != null && queryMethodCall.matches(registeredCall.getMethod(), registeredCall.getArgs())
+				&& removeInvocation(callInfo, sequenceNo)) {
+			callsBySequenceNo[sequenceNo] = null;
+			if (callInfo.isEmpty()) {
+				remove(registeredCall);
+			}
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Removes the invocation with the given sequence number. Strictly verified
+	 * invocations are verified in order, so this is the first invocation of the
+	 * method call unless other invocations were skipped.
+	 */
+	private boolean removeInvocation(Deque<MethodCallInformation> callInfo, int sequenceNo) {
+		if (callInfo.peekFirst().getMethodInvocationSequenceNo() == sequenceNo) {
+			callInfo.removeFirst();
+			return true;
+		} else {
+			return callInfo.removeIf(info -> info.getMethodInvocationSequenceNo() == sequenceNo);
+		}
+	}
+
+	/**
+	 * Also releases the invocations from the sequence number index, so neither the
+	 * method call nor its arguments remain reachable.
+	 */
+	@Override
+	public void remove(MethodCall storedMethodCall) {
+		Deque<MethodCallInformation> callInfo = calls.get(storedMethodCall);
+		if (callInfo != null) {
+			for (MethodCallInformation methodCallInformation : callInfo) {
+				int sequenceNo = methodCallInformation.getMethodInvocationSequenceNo();
+				if (sequenceNo < callsBySequenceNo.length) {
+					callsBySequenceNo[sequenceNo] = null;
+				}
+			}
+		}
+		super.remove(storedMethodCall);
+	}
+
+	@Override
+	public Collection<MethodCallInformation> getMethodCallInformation(MethodCall storedMethodCall) {
+		Deque<MethodCallInformation> callInfo = calls.get(storedMethodCall);
+		return callInfo == null ? Collections.emptyList() : Collections.unmodifiableCollection(callInfo);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		callsBySequenceNo = new MethodCall[16];
+	}
+
+}
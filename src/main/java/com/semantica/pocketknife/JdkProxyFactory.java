@@ -0,0 +1,29 @@
+package com.semantica.pocketknife;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates proxies of interfaces with {@link java.lang.reflect.Proxy}, which
+ * needs no bytecode library and caches its proxy classes itself.
+ */
+public class JdkProxyFactory implements ProxyFactory {
+
+	private static final Object[] NO_ARGS = new Object[0];
+
+	@Override
+	public boolean supports(Class<?> proxiedClass) {
+		return proxiedClass.isInterface();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T createProxy(Class<T> proxiedClass, ProxyInterceptor interceptor) {
+		if (!supports(proxiedClass)) {
+			throw new IllegalArgumentException("JDK proxies can only be created for interfaces, not for "
+					+ proxiedClass.getName() + ".");
+		}
+		return (T) Proxy.newProxyInstance(proxiedClass.getClassLoader(), new Class<?>[] { proxiedClass },
+				(proxy, method, args) -> interceptor.intercept(proxy, method, args == null ? NO_ARGS : args));
+	}
+
+}
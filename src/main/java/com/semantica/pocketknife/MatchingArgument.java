@@ -1,14 +1,17 @@
 package com.semantica.pocketknife;
 
-import java.util.Optional;
-
 public class MatchingArgument {
 
+	/**
+	 * Argument number of a matching argument that may be used for any argument.
+	 */
+	public static final int ANY_ARGUMENT_NUMBER = -1;
+
 	private int captureNumber;
 	private Object matcher;
-	private Optional<Integer> argumentNumber;
+	private int argumentNumber;
 
-	public MatchingArgument(int captureNumber, Object matcher, Optional<Integer> argumentNumber) {
+	public MatchingArgument(int captureNumber, Object matcher, int argumentNumber) {
 		super();
 		this.captureNumber = captureNumber;
 		this.matcher = matcher;
@@ -23,11 +26,15 @@ public class MatchingArgument {
 		this.captureNumber = captureNumber;
 	}
 
-	public Optional<Integer> getArgumentNumber() {
+	/**
+	 * @return the (zero-based) number of the argument this matcher is used for, or
+	 *         {@link #ANY_ARGUMENT_NUMBER}
+	 */
+	public int getArgumentNumber() {
 		return argumentNumber;
 	}
 
-	public void setArgumentNumber(Optional<Integer> argumentNumber) {
+	public void setArgumentNumber(int argumentNumber) {
 		this.argumentNumber = argumentNumber;
 	}
 
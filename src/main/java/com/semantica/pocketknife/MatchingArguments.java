@@ -0,0 +1,117 @@
+package com.semantica.pocketknife;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * The matching arguments stored for the next method call that is captured by a
+ * {@link MethodRecorder}, in the order in which they were stored (their capture
+ * order). As arguments are evaluated in order, only the first stored matching
+ * argument can be the next one to substitute an argument. Matching an argument
+ * therefore takes a single comparison with the identifier value of that
+ * matching argument: by value for identifier values of primitive wrapper types
+ * (as proxies box primitive arguments anew) and by identity for all other
+ * identifier values. The equals and hashCode methods of arguments are never
+ * called.
+ */
+class MatchingArguments {
+
+	private final Queue<Entry> entries = new ArrayDeque<>();
+	private int captureNumber = 0;
+
+	private static class Entry {
+
+		private final MatchingArgument matchingArgument;
+		private final Object identifierValue;
+		private final boolean primitive;
+		private final long primitiveBits;
+
+		public Entry(MatchingArgument matchingArgument, Object identifierValue) {
+			super();
+			this.matchingArgument = matchingArgument;
+			this.identifierValue = identifierValue;
+			this.primitive = isPrimitiveWrapper(identifierValue);
+			this.primitiveBits = primitive ? primitiveBits(identifierValue) : 0;
+		}
+
+		public boolean isIdentifiedBy(Object argument) {
+			if (primitive) {
+				return argument != null && argument.getClass() == identifierValue.getClass()
+						&& primitiveBits(argument) == primitiveBits;
+			} else {
+				return argument == identifierValue;
+			}
+		}
+
+	}
+
+	/**
+	 * Only the exact wrapper classes are compared by value: other Numbers (e.g.
+	 * AtomicInteger, BigDecimal or identifier instances created without invoking
+	 * a constructor) are compared by identity.
+	 */
+	private static boolean isPrimitiveWrapper(Object value) {
+		Class<?> type = value == null ? null : value.getClass();
+		return type == Integer.class || type == Long.class || type == Double.class || type == Float.class
+				|| type == Short.class || type == Byte.class || type == Character.class || type == Boolean.class;
+	}
+
+	private static long primitiveBits(Object value) {
+		if (value instanceof Double) {
+			return Double.doubleToRawLongBits((Double) value);
+		} else if (value instanceof Float) {
+			return Float.floatToRawIntBits((Float) value);
+		} else if (value instanceof Character) {
+			return (Character) value;
+		} else if (value instanceof Boolean) {
+			return (Boolean) value ? 1 : 0;
+		} else {
+			return ((Number) value).longValue();
+		}
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Stores a matching argument.
+	 *
+	 * @param identifierValue the value that identifies the argument to substitute
+	 * @param matcher         the Hamcrest Matcher or Predicate
+	 * @param argumentNumber  the argument number or
+	 *                        {@link MatchingArgument#ANY_ARGUMENT_NUMBER}
+	 */
+	public void add(Object identifierValue, Object matcher, int argumentNumber) {
+		entries.add(new Entry(new MatchingArgument(captureNumber++, matcher, argumentNumber), identifierValue));
+	}
+
+	/**
+	 * Removes the next matching argument if the argument is its identifier value.
+	 *
+	 * @param argument       the captured argument
+	 * @param argumentNumber the number of the captured argument
+	 * @return the matcher that substitutes the argument, or null
+	 */
+	public Object remove(Object argument, int argumentNumber) {
+		Entry entry = entries.peek();
+		if (entry != null && entry.isIdentifiedBy(argument)
+				&& (entry.matchingArgument.getArgumentNumber() == MatchingArgument.ANY_ARGUMENT_NUMBER
+						|| entry.matchingArgument.getArgumentNumber() == argumentNumber)) {
+			entries.remove();
+			return entry.matchingArgument.getMatcher();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Removes the matching arguments that were not used by the last captured
+	 * method call.
+	 */
+	public void clear() {
+		entries.clear();
+		captureNumber = 0;
+	}
+
+}
@@ -1,18 +1,25 @@
 package com.semantica.pocketknife;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Predicate;
+
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.hamcrest.Matcher;
 
 public class MethodCall {
 
 	private final Object method;
 	private final Object[] args;
+	// Deep (array-aware) hash code, computed once as method calls are used as map
+	// keys
+	private final int hash;
 
 	public MethodCall(Object method, Object[] args) {
 		super();
 		this.method = method;
 		this.args = args;
+		this.hash = 31 * Objects.hashCode(method) + Arrays.deepHashCode(args);
 	}
 
 	public Object getMethod() {
@@ -23,19 +30,83 @@ public class MethodCall {
 		return args;
 	}
 
+	/**
+	 * @return true if any of the arguments is a Hamcrest Matcher or a Predicate
+	 */
+	boolean hasMatchingArguments() {
+		if (args != null) {
+			for (Object arg : args) {
+				if (arg instanceof Matcher || arg instanceof Predicate) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a registered invocation matches this method call when it is
+	 * used as a query. Hamcrest Matcher and Predicate arguments of the query are
+	 * applied to the registered arguments, other arguments are compared (deeply)
+	 * for equality.
+	 *
+	 * @param registeredMethod the method of the registered invocation
+	 * @param registeredArgs   the arguments of the registered invocation
+	 * @return true if the registered invocation matches
+	 */
+	boolean matches(Object registeredMethod, Object[] registeredArgs) {
+		if (!Objects.equals(method, registeredMethod) || arity(args) != arity(registeredArgs)) {
+			return false;
+		}
+		for (int i = 0; i < arity(args); i++) {
+			Object queryArg = args[i];
+			Object registeredArg = registeredArgs[i];
+			if (queryArg instanceof Matcher) {
+				if (!((Matcher<?>) queryArg).matches(registeredArg)) {
+					return false;
+				}
+			} else if (queryArg instanceof Predicate) {
+				if (!predicateMatches((Predicate<?>) queryArg, registeredArg)) {
+					return false;
+				}
+			} else if (!Objects.deepEquals(queryArg, registeredArg)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static <T> boolean predicateMatches(Predicate<?> predicate, T subject) {
+		@SuppressWarnings("unchecked")
+		Predicate<T> applicablePredicate = (Predicate<T>) predicate;
+		return applicablePredicate.test(subject);
+	}
+
+	static int arity(Object[] args) {
+		return args == null ? 0 : args.length;
+	}
+
 	@Override
 	public String toString() {
-		return ReflectionToStringBuilder.toString(this);
+		return new ReflectionToStringBuilder(this).setExcludeFieldNames("hash").toString();
 	}
 
 	@Override
 	public int hashCode() {
-		return HashCodeBuilder.reflectionHashCode(this);
+		return hash;
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return EqualsBuilder.reflectionEquals(this, other);
+		if (this == other) {
+			return true;
+		} else if (other == null || other.getClass() != getClass()) {
+			return false;
+		} else {
+			MethodCall otherMethodCall = (MethodCall) other;
+			return hash == otherMethodCall.hash && Objects.equals(method, otherMethodCall.method)
+					&& Arrays.deepEquals(args, otherMethodCall.args);
+		}
 	}
 
 }
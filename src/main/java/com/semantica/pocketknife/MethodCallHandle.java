@@ -0,0 +1,76 @@
+package com.semantica.pocketknife;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * A method call that was captured once by a {@link MethodRecorder} and can be
+ * bound to new argument values any number of times, without invoking the
+ * recorder's proxy again. The arguments of the captured call are either fixed
+ * (they are part of every bound method call) or parameterized (they are
+ * replaced by the values given to {@link #bind(Object...)}).
+ */
+public class MethodCallHandle {
+
+	private final Method method;
+	private final Object[] fixedArgs;
+	private final int[] parameterizedArgumentNumbers;
+
+	MethodCallHandle(MethodCall capturedMethodCall, int[] parameterizedArgumentNumbers) {
+		super();
+		this.method = (Method) capturedMethodCall.getMethod();
+		this.fixedArgs = capturedMethodCall.getArgs() == null ? new Object[0] : capturedMethodCall.getArgs().clone();
+		boolean[] parameterized = new boolean[fixedArgs.length];
+		for (int argumentNumber : parameterizedArgumentNumbers) {
+			if (argumentNumber < 0 || argumentNumber >= fixedArgs.length) {
+				throw new IllegalArgumentException("Method " + method.getName() + " has no argument number "
+						+ argumentNumber + ", argument numbers start from 0.");
+			} else if (parameterized[argumentNumber]) {
+				throw new IllegalArgumentException("Argument number " + argumentNumber + " was given twice.");
+			}
+			parameterized[argumentNumber] = true;
+			fixedArgs[argumentNumber] = null;
+		}
+		this.parameterizedArgumentNumbers = parameterizedArgumentNumbers.clone();
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return the numbers of the parameterized arguments, in the order in which
+	 *         their values are bound
+	 */
+	public int[] getParameterizedArgumentNumbers() {
+		return parameterizedArgumentNumbers.clone();
+	}
+
+	/**
+	 * Creates a method call with the given values for the parameterized
+	 * arguments. The values can be Hamcrest Matchers or Predicates, like the
+	 * arguments of any method call that is verified.
+	 *
+	 * @param parameterValues values of the parameterized arguments, in the order
+	 *                        in which the argument numbers were given
+	 * @return the method call, ready to be verified
+	 */
+	public MethodCall bind(Object... parameterValues) {
+		if (parameterValues.length != parameterizedArgumentNumbers.length) {
+			throw new IllegalArgumentException("Expected " + parameterizedArgumentNumbers.length
+					+ " parameter values, but got " + parameterValues.length + ".");
+		}
+		Object[] args = fixedArgs.clone();
+		for (int i = 0; i < parameterizedArgumentNumbers.length; i++) {
+			args[parameterizedArgumentNumbers[i]] = parameterValues[i];
+		}
+		return new MethodCall(method, args);
+	}
+
+	@Override
+	public String toString() {
+		return "MethodCallHandle [method=" + method + ", fixedArgs=" + Arrays.toString(fixedArgs)
+				+ ", parameterizedArgumentNumbers=" + Arrays.toString(parameterizedArgumentNumbers) + "]";
+	}
+
+}
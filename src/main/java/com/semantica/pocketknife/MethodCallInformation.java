@@ -2,7 +2,10 @@ package com.semantica.pocketknife;
 
 public class MethodCallInformation {
 
+	private static final StackTraceElement[] NO_STACK_TRACE = new StackTraceElement[0];
+
 	private StackTraceElement[] stackTraceElements;
+	private Throwable unresolvedStackTrace;
 	private int methodInvocationSequenceNo;
 
 	public MethodCallInformation(StackTraceElement[] stackTraceElements, int methodInvocationSequenceNo) {
@@ -11,7 +14,35 @@ public class MethodCallInformation {
 		this.methodInvocationSequenceNo = methodInvocationSequenceNo;
 	}
 
+	/**
+	 * Creates method call information of which the stack trace is only resolved
+	 * when it is requested for the first time.
+	 *
+	 * @param unresolvedStackTrace       Throwable created at the moment the method
+	 *                                   call was registered
+	 * @param methodInvocationSequenceNo invocation sequence number
+	 */
+	public MethodCallInformation(Throwable unresolvedStackTrace, int methodInvocationSequenceNo) {
+		super();
+		this.unresolvedStackTrace = unresolvedStackTrace;
+		this.methodInvocationSequenceNo = methodInvocationSequenceNo;
+	}
+
+	/**
+	 * Creates method call information without a stack trace.
+	 *
+	 * @param methodInvocationSequenceNo invocation sequence number
+	 */
+	public MethodCallInformation(int methodInvocationSequenceNo) {
+		this(NO_STACK_TRACE, methodInvocationSequenceNo);
+	}
+
 	public StackTraceElement[] getStackTraceElements() {
+		if (stackTraceElements == null) {
+			stackTraceElements = unresolvedStackTrace == null ? NO_STACK_TRACE
+					: StackFrames.callerFrames(unresolvedStackTrace.getStackTrace(), Integer.MAX_VALUE);
+			unresolvedStackTrace = null;
+		}
 		return stackTraceElements;
 	}
 
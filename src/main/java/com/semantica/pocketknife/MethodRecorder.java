@@ -1,25 +1,14 @@
 package com.semantica.pocketknife;
 
 import java.lang.reflect.Method;
-import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.function.Predicate;
 
 import org.hamcrest.Matcher;
-import org.objenesis.Objenesis;
-import org.objenesis.ObjenesisStd;
 
-import net.sf.cglib.proxy.Callback;
-import net.sf.cglib.proxy.Enhancer;
-import net.sf.cglib.proxy.MethodInterceptor;
-import net.sf.cglib.proxy.MethodProxy;
-
-public class MethodRecorder<T> {
+public class MethodRecorder<T> implements ProxyInterceptor {
 
 	private static class FatalTestException extends RuntimeException {
 		private static final long serialVersionUID = 1L;
@@ -31,132 +20,92 @@ public class MethodRecorder<T> {
 	}
 
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MethodRecorder.class);
-	private static final Objenesis OBJENESIS = new ObjenesisStd();
-	private Class<T> recordedClass;
-	private Method method;
-	private MethodCall methodCall;
+	// Boxed default values of the primitive return types, allocated only once
+	private static final Map<Class<?>, Object> DEFAULT_VALUES = new HashMap<>();
+	static {
+		DEFAULT_VALUES.put(boolean.class, false);
+		DEFAULT_VALUES.put(byte.class, (byte) 0);
+		DEFAULT_VALUES.put(char.class, '\0');
+		DEFAULT_VALUES.put(double.class, 0d);
+		DEFAULT_VALUES.put(float.class, 0f);
+		DEFAULT_VALUES.put(int.class, 0);
+		DEFAULT_VALUES.put(long.class, 0L);
+		DEFAULT_VALUES.put(short.class, (short) 0);
+	}
 	private T proxy;
-	private Class<T> proxyClass;
-	private Map<Class<?>, Map<Object, Queue<MatchingArgument>>> matchers = new HashMap<>();
-	private int captureNumber = 0;
-	private int captureProcessedNumber = 0;
+	private final ThreadLocal<RecordingState> recordingState = ThreadLocal.withInitial(RecordingState::new);
+
+	/**
+	 * The state of the method call that is captured (or was last captured) by a
+	 * thread. Confining it to the thread allows a single recorder (and proxy) to
+	 * be used by tests that run in parallel.
+	 */
+	private static class RecordingState {
+
+		private Method method;
+		private MethodCall methodCall;
+		private final MatchingArguments matchingArguments = new MatchingArguments();
+
+	}
 
-	@SuppressWarnings("unchecked")
 	public MethodRecorder(Class<T> recordedClass) {
+		this(recordedClass, ProxyFactory.getDefault());
+	}
+
+	/**
+	 * Creates a recorder of which the proxy is created by the given factory.
+	 *
+	 * @param recordedClass the class or interface of which method calls are
+	 *                      recorded
+	 * @param proxyFactory  the factory of the proxy
+	 */
+	public MethodRecorder(Class<T> recordedClass, ProxyFactory proxyFactory) {
 		super();
-		this.recordedClass = recordedClass;
-		Enhancer enhancer = new Enhancer();
-		enhancer.setUseCache(false);
-		enhancer.setSuperclass(recordedClass);
-		// Only works when class has no-args constructor:
-		// enhancer.setCallback((MethodInterceptor) this::intercept);
-		// this.proxy = (T) enhancer.create();
-		enhancer.setCallbackType(MethodInterceptor.class);
-		proxyClass = enhancer.createClass();
-		Enhancer.registerCallbacks(proxyClass, new Callback[] { (MethodInterceptor) this::intercept });
-		this.proxy = OBJENESIS.newInstance(proxyClass);
+		this.proxy = proxyFactory.createProxy(recordedClass, this);
 	}
 
 	public static <T> MethodRecorder<T> recordInvocationsOn(Class<T> recordedClass) {
 		return new MethodRecorder<>(recordedClass);
 	}
 
+	public static <T> MethodRecorder<T> recordInvocationsOn(Class<T> recordedClass, ProxyFactory proxyFactory) {
+		return new MethodRecorder<>(recordedClass, proxyFactory);
+	}
+
 	/**
 	 * Method interceptor that does not call back any method on the superclass but
-	 * simply
+	 * simply captures the method call and returns the default value of the return
+	 * type of the method. It does not allocate anything besides the captured
+	 * method call, unless matchers were stored for the arguments.
 	 *
 	 * @param obj
 	 * @param method
 	 * @param args
-	 * @param proxy
-	 * @return
+	 * @return null, or the default value if the return type is a primitive
 	 * @throws Throwable
 	 */
-	public Object intercept(Object obj, java.lang.reflect.Method method, Object[] args, MethodProxy proxy)
-			throws Throwable {
-		this.method = method;
-		this.methodCall = new MethodCall(method, substituteWithMatchingArgs(args));
-		this.captureNumber = 0;
-		this.captureProcessedNumber = 0;
-		if (method.getReturnType() == void.class) {
-			log.debug("Returning null for void Method {} in callback.", method);
-			return null;
-		} else if (method.getReturnType() == int.class) {
-			log.debug("Returning 0 for Method {} in callback.", method);
-			return 0;
-		} else if (method.getReturnType() == boolean.class) {
-			log.debug("Returning false for Method {} in callback.", method);
-			return false;
-		} else {
-			log.debug("Returning null for Method {} in callback.", method);
-			return null;
+	@Override
+	public Object intercept(Object obj, java.lang.reflect.Method method, Object[] args) throws Throwable {
+		RecordingState state = recordingState.get();
+		state.method = method;
+		state.methodCall = new MethodCall(method, substituteWithMatchingArgs(state.matchingArguments, args));
+		Object defaultValue = DEFAULT_VALUES.get(method.getReturnType());
+		log.debug("Returning {} for Method {} in callback.", defaultValue, method);
+		return defaultValue;
+	}
+
+	private Object[] substituteWithMatchingArgs(MatchingArguments matchingArguments, Object[] args) {
+		if (matchingArguments.isEmpty()) {
+			return args;
 		}
-	}
-
-	private Object[] substituteWithMatchingArgs(Object[] args) {
 		for (int i = 0; i < args.length; i++) {
-			args[i] = getOptionalMatchingValue(args[i], i).orElse(args[i]);
-		}
-		return args;
-	}
-
-	private Optional<Object> getOptionalMatchingValue(Object argument, int argumentNumber) {
-		if (argument != null) {
-			Map<Object, Queue<MatchingArgument>> matchersForClass = matchers.get(argument.getClass());
-			debugAid1(argument);
-			if (matchersForClass != null) {
-				Queue<MatchingArgument> matchersForIdentifierValue = matchersForClass.get(argument);
-				debugAid2(argument, matchersForClass);
-				if (matchersForIdentifierValue != null) {
-					MatchingArgument matcherCandidate = matchersForIdentifierValue.element();
-					if (matcherCandidate.getCaptureNumber() == captureProcessedNumber
-							&& (!matcherCandidate.getArgumentNumber().isPresent()
-									|| matcherCandidate.getArgumentNumber().get() == argumentNumber)) {
-						captureProcessedNumber++;
-						Object matcher = matchersForIdentifierValue.remove().getMatcher();
-						if (matchersForIdentifierValue.isEmpty()) {
-							matchersForClass.remove(argument);
-							if (matchersForClass.isEmpty()) {
-								matchers.remove(argument.getClass());
-							}
-						}
-						return Optional.of(matcher);
-					}
-				}
+			Object matcher = matchingArguments.remove(args[i], i);
+			if (matcher != null) {
+				args[i] = matcher;
 			}
 		}
-		return Optional.empty();
-	}
-
-	// TODO: Remove debug aid
-	private void debugAid1(Object argument) {
-		Class<?> argumentClass = argument.getClass();
-		int argumentHashCode = argument.hashCode();
-
-		Iterator<Class<?>> iterator = matchers.keySet().iterator();
-		Class<?> keyClass1 = null, keyClass2 = null;
-		int hashCode1 = 0, hashCode2 = 0;
-		boolean equals1 = false, equals2 = false;
-		if (iterator.hasNext()) {
-			keyClass1 = iterator.next();
-			hashCode1 = keyClass1.hashCode();
-			equals1 = keyClass1.equals(argumentClass);
-		}
-		if (iterator.hasNext()) {
-			keyClass2 = iterator.next();
-			hashCode2 = keyClass2.hashCode();
-			equals2 = keyClass2.equals(argumentClass);
-		}
-		System.out.println("" + keyClass1 + keyClass2 + hashCode1 + hashCode2 + equals1 + equals2);
-	}
-
-	// TODO: Remove debug aid
-	private void debugAid2(Object argument, Map<Object, Queue<MatchingArgument>> matchersForClass) {
-		Object key = matchersForClass.keySet().toArray(new Object[0])[0];
-		Class<?> clazz = argument.getClass();
-		int hashCode1 = argument.hashCode();
-		int hashCode2 = key.hashCode();
-		boolean equals = key.equals(argument);
+		matchingArguments.clear();
+		return args;
 	}
 
 	public <S> String getMethodName(Callable<S> callableMethodInvoker) {
@@ -174,7 +123,28 @@ public class MethodRecorder<T> {
 			log.debug("Exception was thrown while executing runnable method invoker.", e);
 			throw new FatalTestException(e);
 		}
-		return methodCall;
+		return recordingState.get().methodCall;
+	}
+
+	/**
+	 * Captures a method call once and compiles it into a handle that creates
+	 * method calls for new argument values, without invoking the proxy again.
+	 *
+	 * @param callableMethodInvoker        invokes the method on the proxy
+	 * @param parameterizedArgumentNumbers the (zero-based) numbers of the
+	 *                                     arguments that are bound later, all
+	 *                                     other arguments are fixed
+	 * @return the handle
+	 */
+	public <S> MethodCallHandle compile(Callable<S> callableMethodInvoker, int... parameterizedArgumentNumbers) {
+		return new MethodCallHandle(getMethodCall(callableMethodInvoker), parameterizedArgumentNumbers);
+	}
+
+	/**
+	 * @see #compile(Callable, int...)
+	 */
+	public MethodCallHandle compile(ThrowingRunnable runnableMethodInvoker, int... parameterizedArgumentNumbers) {
+		return new MethodCallHandle(getMethodCall(runnableMethodInvoker), parameterizedArgumentNumbers);
 	}
 
 	public String getMethodName(ThrowingRunnable runnableMethodInvoker) {
@@ -192,123 +162,123 @@ public class MethodRecorder<T> {
 			log.debug("Exception was thrown while executing runnable method invoker.", e);
 			throw new FatalTestException(e);
 		}
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public Method getMethod(Object object) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(boolean dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(byte dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(char dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(double dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(float dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(int dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(long dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public Method getMethod(short dummy) {
-		return method;
+		return recordingState.get().method;
 	}
 
 	public MethodCall getMethodCall() {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(Object object) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(boolean dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(byte dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(char dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(double dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(float dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(int dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(long dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public MethodCall getMethodCall(short dummy) {
-		return methodCall;
+		return recordingState.get().methodCall;
 	}
 
 	public String getMethodName() {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(Object object) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(boolean dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(byte dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(char dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(double dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(float dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(int dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(long dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public String getMethodName(short dummy) {
-		return method.getName();
+		return recordingState.get().method.getName();
 	}
 
 	public T getProxy() {
@@ -316,36 +286,24 @@ public class MethodRecorder<T> {
 	}
 
 	public <S> S storeAndCreateIdInstanceOfTypeArgument(Predicate<S> predicate, Class<S> clazz) {
-		return storeAndCreateIdInstanceOfTypeArgument(predicate, clazz, Optional.empty());
+		return storeMatchingArgument(predicate, clazz, MatchingArgument.ANY_ARGUMENT_NUMBER);
 	}
 
 	public <S> S storeAndCreateIdInstanceOfTypeArgument(Matcher<S> matcher, Class<S> clazz) {
-		return storeAndCreateIdInstanceOfTypeArgument(matcher, clazz, Optional.empty());
+		return storeMatchingArgument(matcher, clazz, MatchingArgument.ANY_ARGUMENT_NUMBER);
 	}
 
 	public <S> S storeAndCreateIdInstanceOfTypeArgument(Predicate<S> predicate, Class<S> clazz, int argumentNumber) {
-		return storeAndCreateIdInstanceOfTypeArgument(predicate, clazz, Optional.of(argumentNumber));
+		return storeMatchingArgument(predicate, clazz, argumentNumber);
 	}
 
 	public <S> S storeAndCreateIdInstanceOfTypeArgument(Matcher<S> matcher, Class<S> clazz, int argumentNumber) {
-		return storeAndCreateIdInstanceOfTypeArgument(matcher, clazz, Optional.of(argumentNumber));
+		return storeMatchingArgument(matcher, clazz, argumentNumber);
 	}
 
-	private <S> S storeAndCreateIdInstanceOfTypeArgument(Object matcher, Class<S> clazz,
-			Optional<Integer> argumentNumber) {
+	private <S> S storeMatchingArgument(Object matcher, Class<S> clazz, int argumentNumber) {
 		S value = Primitives.identifierValue(clazz);
-		Class<?> identifierClass = value.getClass();
-		Map<Object, Queue<MatchingArgument>> matchersForClass = matchers.get(identifierClass);
-		if (matchersForClass == null) {
-			matchersForClass = new HashMap<>();
-			matchers.put(identifierClass, matchersForClass);
-		}
-		Queue<MatchingArgument> matcherArgumentsForSameIdentifier = matchersForClass.get(value);
-		if (matcherArgumentsForSameIdentifier == null) {
-			matcherArgumentsForSameIdentifier = new ArrayDeque<>();
-			matchersForClass.put(value, matcherArgumentsForSameIdentifier);
-		}
-		matcherArgumentsForSameIdentifier.add(new MatchingArgument(captureNumber++, matcher, argumentNumber));
+		recordingState.get().matchingArguments.add(value, matcher, argumentNumber);
 		return value;
 	}
 
@@ -0,0 +1,39 @@
+package com.semantica.pocketknife;
+
+/**
+ * Method and number of arguments of a method call, used to index registered
+ * method calls for queries with matching arguments.
+ */
+class MethodSignature {
+
+	private final Object method;
+	private final int arity;
+
+	public MethodSignature(MethodCall methodCall) {
+		this(methodCall.getMethod(), methodCall.getArgs());
+	}
+
+	public MethodSignature(Object method, Object[] args) {
+		super();
+		this.method = method;
+		this.arity = MethodCall.arity(args);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * method.hashCode() + arity;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		} else if (other == null || other.getClass() != MethodSignature.class) {
+			return false;
+		} else {
+			MethodSignature otherSignature = (MethodSignature) other;
+			return arity == otherSignature.arity && method.equals(otherSignature.method);
+		}
+	}
+
+}
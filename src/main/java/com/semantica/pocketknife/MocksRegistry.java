@@ -1,67 +1,282 @@
 package com.semantica.pocketknife;
 
-import java.util.HashSet;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
 
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+/**
+ * Registry of the mocks of which is verified that no more method invocations
+ * remain. Mocks are registered by identity, so registering and deregistering
+ * takes constant time and never calls the hashCode() or equals() methods of
+ * a mock. Optionally mocks are only referenced weakly, so mocks that are no
+ * longer used are collected together with their calls and removed from the
+ * registry.
+ *
+ * The calls of all registered mocks are attached to the epoch of the registry,
+ * so they can be reset at once by {@link #reset()}.
+ */
 @Singleton
 public class MocksRegistry {
 
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MocksRegistry.class);
 
-	private Set<Mock> mocks;
-	private Set<Provider<? extends Mock>> mockProviders;
+	// Registered mocks in registration order, the values are the mocks
+	// themselves if they are referenced strongly and null otherwise
+	private final Map<MockReference, Mock> mocks = new LinkedHashMap<>();
+	private final ReferenceQueue<Mock> collectedMocks = new ReferenceQueue<>();
+	private final boolean weakReferences;
+	// Unresolved mock providers in registration order, and the same providers by
+	// identity for duplicate checks
+	private final Deque<Provider<? extends Mock>> mockProviders = new ArrayDeque<>();
+	private final Set<Provider<? extends Mock>> pendingMockProviders = Collections
+			.newSetFromMap(new IdentityHashMap<>());
+	private final Epoch epoch = new Epoch();
+
+	/**
+	 * Weak reference to a mock that is equal to references to the same mock.
+	 * Its hash is the identity hash code of the mock, so it can still be removed
+	 * from the registry once the mock was collected.
+	 */
+	private static class MockReference extends WeakReference<Mock> {
+
+		private final int hash;
+
+		public MockReference(Mock mock, ReferenceQueue<Mock> queue) {
+			super(mock, queue);
+			this.hash = System.identityHashCode(mock);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof MockReference)) {
+				return false;
+			}
+			Mock mock = get();
+			return mock != null && mock == ((MockReference) obj).get();
+		}
+
+	}
 
 	public MocksRegistry() {
+		this(false);
+	}
+
+	/**
+	 * Creates a registry that optionally only references its mocks weakly.
+	 *
+	 * @param weakReferences true if mocks that are no longer referenced elsewhere
+	 *                       are collected and removed from the registry
+	 */
+	public MocksRegistry(boolean weakReferences) {
 		super();
-		mocks = new HashSet<>();
-		mockProviders = new HashSet<>();
+		this.weakReferences = weakReferences;
 	}
 
 	public MocksRegistry(Set<Mock> mocks) {
-		super();
-		this.mocks = mocks;
+		this(false);
+		for (Mock mock : mocks) {
+			registerMock(mock);
+		}
 	}
 
-	public boolean registerMock(Mock mock) {
-		return mocks.add(mock);
+	public synchronized boolean registerMock(Mock mock) {
+		expungeCollectedMocks();
+		MockReference mockReference = new MockReference(mock, collectedMocks);
+		if (mocks.containsKey(mockReference)) {
+			return false;
+		}
+		mocks.put(mockReference, weakReferences ? null : mock);
+		mock.getCalls().attachTo(epoch);
+		return true;
 	}
 
-	public boolean registerMockProvider(Provider<? extends Mock> mockProvider) {
+	/**
+	 * Registers a provider of a mock. The provider is only resolved, once, when
+	 * all mocks are verified or when a mock that is not registered yet is
+	 * deregistered.
+	 *
+	 * @param mockProvider provider of the mock
+	 * @return true if the provider was not registered yet
+	 */
+	public synchronized boolean registerMockProvider(Provider<? extends Mock> mockProvider) {
+		if (!pendingMockProviders.add(mockProvider)) {
+			return false;
+		}
 		return mockProviders.add(mockProvider);
 	}
 
+	/**
+	 * Verifies that no more method invocations remain on any of the registered
+	 * mocks, in parallel like {@link #verifyAllMocks(ForkJoinPool)}. The remaining
+	 * calls are only rendered if they are logged.
+	 */
 	public boolean verifyNoMoreMethodInvocationsAnywhere() {
 		boolean noMoreMethodInvocationsAnywhere = true;
-		for (Mock mock : mocks) {
-			noMoreMethodInvocationsAnywhere &= mock.getCalls().verifyNoMoreMethodInvocations(false);
+		for (Boolean noMoreMethodInvocations : verifyInParallel(ForkJoinPool.commonPool(),
+				mock -> mock.getCalls().verifyNoMoreMethodInvocations(false))) {
+			noMoreMethodInvocationsAnywhere &= noMoreMethodInvocations;
 		}
-		for (Provider<? extends Mock> mockProvider : mockProviders) {
-			Mock mock = mockProvider.get();
-			mocks.add(mock);
-			noMoreMethodInvocationsAnywhere &= mock.getCalls().verifyNoMoreMethodInvocations(false);
-		}
-		mockProviders.clear();
 		return noMoreMethodInvocationsAnywhere;
 	}
 
 	/**
-	 * If the hashCode() value of a mock has changed since it was registered, the
-	 * mock cannot be removed. This is due to the behaviour of HashSet.
+	 * Verifies that no more method invocations remain on any of the registered
+	 * mocks, see {@link #verifyAllMocks(ForkJoinPool)}, using the common pool.
+	 */
+	public VerificationReport verifyAllMocks() {
+		return verifyAllMocks(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Verifies that no more method invocations remain on any of the registered
+	 * mocks. Every mock is verified by its own task in the given pool, so mocks
+	 * with large call logs are verified in parallel. The remaining calls of every
+	 * mock are logged as they are by {@link Calls#verifyNoMoreMethodInvocations()}
+	 * and reported.
 	 *
-	 * @param mock
-	 * @return
+	 * @param pool the pool that executes the verification tasks
+	 * @return the report of the mocks that have remaining calls
+	 */
+	public VerificationReport verifyAllMocks(ForkJoinPool pool) {
+		List<VerificationReport.MockReport> mockReports = verifyInParallel(pool, mock -> {
+			String remainingCalls = mock.getCalls().reportRemainingCalls(false);
+			return remainingCalls == null ? null : new VerificationReport.MockReport(mock, remainingCalls);
+		});
+		int verifiedMocks = mockReports.size();
+		mockReports.removeIf(mockReport -> mockReport == null);
+		return new VerificationReport(verifiedMocks, mockReports);
+	}
+
+	/**
+	 * @return the results of verifying every registered mock by its own task in
+	 *         the given pool, in registration order
 	 */
-	public void deregisterMock(Mock mock) {
-		for (Provider<? extends Mock> mockProvider : mockProviders) {
-			mocks.add(mockProvider.get());
-		}
-		mockProviders.clear();
-		boolean success = mocks.remove(mock);
-		log.debug("Result of deregistering mock \"{}\" with hash \"{}\": {}", mock.getClass().getSimpleName(),
-				mock.hashCode(), success);
+	private <V> List<V> verifyInParallel(ForkJoinPool pool, Function<Mock, V> verification) {
+		List<MockVerification<V>> verifications = new ArrayList<>();
+		for (Mock mock : getMocks()) {
+			verifications.add(new MockVerification<>(mock, verification));
+		}
+		pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(verifications)));
+		List<V> results = new ArrayList<>(verifications.size());
+		for (MockVerification<V> mockVerification : verifications) {
+			results.add(mockVerification.join());
+		}
+		return results;
+	}
+
+	/**
+	 * @return the registered mocks that were not collected, in registration order,
+	 *         after resolving all mock providers
+	 */
+	public synchronized List<Mock> getMocks() {
+		resolveMockProviders();
+		expungeCollectedMocks();
+		List<Mock> registeredMocks = new ArrayList<>(mocks.size());
+		for (MockReference mockReference : mocks.keySet()) {
+			Mock mock = mockReference.get();
+			if (mock != null) {
+				registeredMocks.add(mock);
+			}
+		}
+		return registeredMocks;
+	}
+
+	private void resolveMockProviders() {
+		while (!mockProviders.isEmpty()) {
+			Provider<? extends Mock> mockProvider = mockProviders.poll();
+			pendingMockProviders.remove(mockProvider);
+			registerMock(mockProvider.get());
+		}
+	}
+
+	private void expungeCollectedMocks() {
+		for (Reference<? extends Mock> collectedMock; (collectedMock = collectedMocks.poll()) != null;) {
+			mocks.remove(collectedMock);
+		}
+	}
+
+	/**
+	 * Verifies a single mock.
+	 */
+	private static class MockVerification<V> extends RecursiveTask<V> {
+
+		private static final long serialVersionUID = 1L;
+		private final transient Mock mock;
+		private final transient Function<Mock, V> verification;
+
+		public MockVerification(Mock mock, Function<Mock, V> verification) {
+			super();
+			this.mock = mock;
+			this.verification = verification;
+		}
+
+		@Override
+		protected V compute() {
+			return verification.apply(mock);
+		}
+
+	}
+
+	/**
+	 * Resets the calls of all registered mocks, in constant time: every mock
+	 * discards its calls the next time they are registered or verified. Unlike
+	 * {@link Mock#reset()}, no other state of the mocks is reset.
+	 */
+	public void reset() {
+		epoch.advance();
+	}
+
+	public Epoch getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Deregisters the mock. Mock providers are only resolved if the mock is not
+	 * registered (yet).
+	 *
+	 * @param mock the registered mock
+	 * @throws IllegalStateException if the mock is not registered
+	 */
+	public synchronized void deregisterMock(Mock mock) {
+		expungeCollectedMocks();
+		MockReference mockReference = new MockReference(mock, null);
+		boolean success = mocks.containsKey(mockReference);
+		if (!success && !mockProviders.isEmpty()) {
+			resolveMockProviders();
+			success = mocks.containsKey(mockReference);
+		}
+		if (success) {
+			mocks.remove(mockReference);
+			Calls calls = mock.getCalls();
+			if (calls.getEpoch() == epoch) {
+				calls.attachTo(null);
+			}
+		}
+		log.debug("Result of deregistering mock \"{}\" with identity hash \"{}\": {}", mock.getClass().getSimpleName(),
+				System.identityHashCode(mock), success);
 		if (!success) {
 			throw new IllegalStateException("Mock with class " + mock.getClass().getSimpleName()
 					+ " tried to deregister itself, but registration could not be found. Unable to deregister.");
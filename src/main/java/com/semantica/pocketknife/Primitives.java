@@ -1,26 +1,24 @@
 package com.semantica.pocketknife;
 
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
 
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 
-import net.sf.cglib.proxy.Callback;
-import net.sf.cglib.proxy.Enhancer;
-import net.sf.cglib.proxy.MethodInterceptor;
-import net.sf.cglib.proxy.MethodProxy;
-
 @SuppressWarnings("unchecked")
 public class Primitives {
 
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(Primitives.class);
 	private static final Map<Class<?>, Object> PRIMITIVE_OR_WRAPPER_DEFAULT_VALUES = new HashMap<Class<?>, Object>();
-	private static final Random RANDOM = new Random();
 	private static final Objenesis objenesis = new ObjenesisStd();
-	private static final Map<Integer, Class<?>> instancesOf = new HashMap<>();
+	// Identifier instances of interfaces and abstract classes are proxies of which
+	// the proxy class is generated only once per class, they share this
+	// interceptor. Their requested class is derived from the proxy class, so
+	// instances are not tracked and are reclaimed as soon as they are unused.
+	private static final ProxyInterceptor IDENTIFIER_INTERCEPTOR = Primitives::intercept;
 
 	public static <T> T defaultValue(Class<T> primitiveOrWrapperType) {
 		return (T) PRIMITIVE_OR_WRAPPER_DEFAULT_VALUES.get(primitiveOrWrapperType);
@@ -50,50 +48,61 @@ public class Primitives {
 		if (clazz.isArray()) {
 			return (T) java.lang.reflect.Array.newInstance(clazz.getComponentType(), 1);
 		} else if (clazz == Boolean.class || clazz == boolean.class) {
-			return (T) Boolean.FALSE;
+			return (T) (Boolean) IdentifierAllocator.get().nextBoolean();
 		} else if (clazz == Character.class || clazz == char.class) {
-			return (T) (Integer) RANDOM.nextInt(Character.MAX_VALUE + 1);
+			return (T) (Character) IdentifierAllocator.get().nextChar();
 		} else if (clazz == Byte.class || clazz == byte.class) {
-			return (T) (Byte) (byte) (RANDOM.nextInt(Math.abs(Byte.MIN_VALUE) + Byte.MAX_VALUE + 1)
-					- Math.abs(Byte.MIN_VALUE));
+			return (T) (Byte) IdentifierAllocator.get().nextByte();
 		} else if (clazz == Short.class || clazz == short.class) {
-			return (T) (Short) (short) (RANDOM.nextInt(Math.abs(Short.MIN_VALUE) + Short.MAX_VALUE + 1)
-					- Math.abs(Short.MIN_VALUE));
+			return (T) (Short) IdentifierAllocator.get().nextShort();
 		} else if (clazz == Integer.class || clazz == int.class) {
-			return (T) (Integer) (RANDOM.nextInt());
+			return (T) (Integer) IdentifierAllocator.get().nextInt();
 		} else if (clazz == Long.class || clazz == long.class) {
-			return (T) (Long) (RANDOM.nextLong());
+			return (T) (Long) IdentifierAllocator.get().nextLong();
 		} else if (clazz == Float.class || clazz == float.class) {
-			return (T) (Float) (RANDOM.nextFloat());
+			return (T) (Float) IdentifierAllocator.get().nextFloat();
 		} else if (clazz == Double.class || clazz == double.class) {
-			return (T) (Double) (RANDOM.nextDouble());
+			return (T) (Double) IdentifierAllocator.get().nextDouble();
 		} else {
-			Class<?> requestedClass = clazz;
+			T newInstance;
 			if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
-				Enhancer enhancer = new Enhancer();
-				enhancer.setUseCache(false);
-				enhancer.setSuperclass(clazz);
-				enhancer.setCallbackType(MethodInterceptor.class);
-				clazz = enhancer.createClass();
-				Enhancer.registerCallbacks(clazz, new Callback[] { (MethodInterceptor) Primitives::intercept });
+				newInstance = ProxyFactory.getDefault().createProxy(clazz, IDENTIFIER_INTERCEPTOR);
+			} else {
+				newInstance = objenesis.newInstance(clazz);
 			}
-			T newInstance = objenesis.newInstance(clazz);
-			instancesOf.put(System.identityHashCode(newInstance), requestedClass);
 			return newInstance;
 		}
 	}
 
-	public static Object intercept(Object obj, java.lang.reflect.Method method, Object[] args, MethodProxy proxy)
-			throws Throwable {
+	public static Object intercept(Object obj, java.lang.reflect.Method method, Object[] args) throws Throwable {
 		if (method.getName().equals("hashCode") && method.getReturnType() == int.class) {
 			return System.identityHashCode(obj);
 		} else if (method.getName().equals("toString") && method.getReturnType() == String.class) {
-			return "Identifier dummy instance of class: " + instancesOf.get(System.identityHashCode(obj))
-					+ ", hashCode: " + System.identityHashCode(obj);
+			return "Identifier dummy instance of class: " + requestedClass(obj) + ", hashCode: "
+					+ System.identityHashCode(obj);
 		} else if (method.getName().equals("equals") && method.getReturnType() == boolean.class) {
-			return System.identityHashCode(obj) == System.identityHashCode(args[0]);
+			return obj == args[0];
+		} else if (method.getReturnType().isPrimitive()) {
+			// JDK proxies cannot return null for primitive return types
+			return PRIMITIVE_OR_WRAPPER_DEFAULT_VALUES.get(method.getReturnType());
 		} else {
 			return null;
 		}
 	}
+
+	/**
+	 * Derives the requested class of an identifier instance from its generated
+	 * proxy class, so no instances need to be tracked. A JDK proxy implements the
+	 * requested interface first, a cglib proxy either extends the requested class
+	 * or implements the requested interface first.
+	 */
+	private static Class<?> requestedClass(Object identifierInstance) {
+		Class<?> proxyClass = identifierInstance.getClass();
+		if (Proxy.isProxyClass(proxyClass)
+				|| (proxyClass.getSuperclass() == Object.class && proxyClass.getInterfaces().length > 0)) {
+			return proxyClass.getInterfaces()[0];
+		} else {
+			return proxyClass.getSuperclass();
+		}
+	}
 }
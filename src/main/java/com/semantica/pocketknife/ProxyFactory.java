@@ -0,0 +1,35 @@
+package com.semantica.pocketknife;
+
+/**
+ * Creates the proxies through which {@link MethodRecorder} captures method
+ * calls and through which {@link Primitives} creates identifier values.
+ */
+public interface ProxyFactory {
+
+	/**
+	 * @param proxiedClass the class or interface to proxy
+	 * @return true if this factory can create proxies of the class
+	 */
+	public boolean supports(Class<?> proxiedClass);
+
+	/**
+	 * Creates a proxy instance without invoking any constructor of the proxied
+	 * class. Every invocation of a (non-final) method on the proxy is passed to
+	 * the interceptor.
+	 *
+	 * @param proxiedClass the class or interface to proxy
+	 * @param interceptor  the interceptor of this proxy instance
+	 * @return the proxy
+	 * @throws IllegalArgumentException if the class is not supported
+	 */
+	public <T> T createProxy(Class<T> proxiedClass, ProxyInterceptor interceptor);
+
+	/**
+	 * @return the factory that uses JDK proxies for interfaces and cglib for
+	 *         classes
+	 */
+	public static ProxyFactory getDefault() {
+		return DefaultProxyFactory.INSTANCE;
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.semantica.pocketknife;
+
+import java.lang.reflect.Method;
+
+/**
+ * Handles the method invocations on a proxy created by a {@link ProxyFactory}.
+ */
+@FunctionalInterface
+public interface ProxyInterceptor {
+
+	/**
+	 * @param proxy  the proxy on which the method was invoked
+	 * @param method the invoked method
+	 * @param args   the invocation arguments, an empty array for methods without
+	 *               parameters
+	 * @return the value returned to the caller of the proxy
+	 * @throws Throwable
+	 */
+	public Object intercept(Object proxy, Method method, Object[] args) throws Throwable;
+
+}
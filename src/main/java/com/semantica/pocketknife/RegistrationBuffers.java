@@ -0,0 +1,129 @@
+package com.semantica.pocketknife;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Per-thread buffers for method call registrations. Every registering thread
+ * appends to its own buffer, so registering threads never contend with each
+ * other. The buffers are drained (and merged in invocation sequence order) when
+ * the registered calls are verified, or when a buffer is full.
+ *
+ * The buffers are owned by this instance, the threads only reference them
+ * weakly. Clearing releases the buffers and replaces the thread local, so
+ * pooled threads do not retain the buffers (or the calls in them) of cleared or
+ * unreachable instances.
+ */
+class RegistrationBuffers {
+
+	// Bounds the registrations that are held per thread before they reach the
+	// call store, which may aggregate them
+	static final int FLUSH_THRESHOLD = 1 << 10;
+
+	private volatile ThreadLocal<WeakReference<RegistrationBuffer>> threadBuffer = new ThreadLocal<>();
+	private volatile Queue<RegistrationBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+	static class Registration {
+
+		private final Object method;
+		private final Object[] args;
+		private final int sequenceNo;
+		private final MethodCallInformation methodCallInformation;
+
+		public Registration(Object method, Object[] args, int sequenceNo,
+				MethodCallInformation methodCallInformation) {
+			super();
+			this.method = method;
+			this.args = args;
+			this.sequenceNo = sequenceNo;
+			this.methodCallInformation = methodCallInformation;
+		}
+
+		public Object getMethod() {
+			return method;
+		}
+
+		public Object[] getArgs() {
+			return args;
+		}
+
+		public int getSequenceNo() {
+			return sequenceNo;
+		}
+
+		public MethodCallInformation getMethodCallInformation() {
+			return methodCallInformation;
+		}
+
+	}
+
+	/**
+	 * Buffer that is only appended to by its owning thread. Its monitor is
+	 * therefore only contended while the buffer is being drained.
+	 */
+	private static class RegistrationBuffer {
+
+		private List<Registration> registrations = new ArrayList<>();
+
+		public synchronized boolean add(Registration registration) {
+			registrations.add(registration);
+			return registrations.size() >= FLUSH_THRESHOLD;
+		}
+
+		public synchronized List<Registration> drain() {
+			List<Registration> drainedRegistrations = registrations;
+			registrations = new ArrayList<>();
+			return drainedRegistrations;
+		}
+
+	}
+
+	private RegistrationBuffer getThreadBuffer() {
+		ThreadLocal<WeakReference<RegistrationBuffer>> threadBuffer = this.threadBuffer;
+		WeakReference<RegistrationBuffer> bufferReference = threadBuffer.get();
+		RegistrationBuffer buffer = bufferReference == null ? null : bufferReference.get();
+		if (buffer == null) {
+			buffer = new RegistrationBuffer();
+			buffers.add(buffer);
+			threadBuffer.set(new WeakReference<>(buffer));
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return true if the buffer of the calling thread is full and should be
+	 *         drained
+	 */
+	public boolean add(Object method, Object[] args, int sequenceNo, MethodCallInformation methodCallInformation) {
+		return getThreadBuffer().add(new Registration(method, args, sequenceNo, methodCallInformation));
+	}
+
+	/**
+	 * Drains the buffers of all threads.
+	 *
+	 * @return the drained registrations, ordered by invocation sequence number
+	 */
+	public List<Registration> drain() {
+		List<Registration> registrations = new ArrayList<>();
+		for (RegistrationBuffer buffer : buffers) {
+			registrations.addAll(buffer.drain());
+		}
+		registrations.sort(Comparator.comparingInt(Registration::getSequenceNo));
+		return registrations;
+	}
+
+	/**
+	 * Discards the registrations in the buffers of all threads and releases the
+	 * buffers. Registrations that are added while clearing may be discarded as
+	 * well.
+	 */
+	public void clear() {
+		buffers = new ConcurrentLinkedQueue<>();
+		threadBuffer = new ThreadLocal<>();
+	}
+
+}
@@ -0,0 +1,183 @@
+package com.semantica.pocketknife;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Captures the frames of the current call stack, starting at the first frame
+ * outside of the pocketknife call registration classes.
+ *
+ * When running on Java 9 or higher, the StackWalker API is used (through method
+ * handles, as this library is compiled for Java 8) so that only the requested
+ * frames are walked. On Java 8 the stack trace of a new Throwable is used
+ * instead.
+ */
+final class StackFrames {
+
+	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(StackFrames.class);
+	private static final StackTraceElement[] NO_FRAMES = new StackTraceElement[0];
+	private static final MethodHandle WALK;
+	private static final MethodHandle TO_STACK_TRACE_ELEMENT;
+	private static final MethodHandle GET_CLASS_NAME;
+	private static final MethodHandle GET_METHOD_NAME;
+
+	static {
+		MethodHandle walk = null;
+		MethodHandle toStackTraceElement = null;
+		MethodHandle getClassName = null;
+		MethodHandle getMethodName = null;
+		try {
+			Class<?> stackWalkerClass = Class.forName("java.lang.StackWalker");
+			Class<?> stackFrameClass = Class.forName("java.lang.StackWalker$StackFrame");
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Object stackWalker = stackWalkerClass.getMethod("getInstance").invoke(null);
+			walk = lookup.findVirtual(stackWalkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+					.bindTo(stackWalker);
+			toStackTraceElement = lookup.findVirtual(stackFrameClass, "toStackTraceElement",
+					MethodType.methodType(StackTraceElement.class));
+			getClassName = lookup.findVirtual(stackFrameClass, "getClassName", MethodType.methodType(String.class));
+			getMethodName = lookup.findVirtual(stackFrameClass, "getMethodName", MethodType.methodType(String.class));
+		} catch (ReflectiveOperationException e) {
+			log.debug("StackWalker API not available, falling back to Throwable stack traces.");
+			walk = null;
+		}
+		WALK = walk;
+		TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+		GET_CLASS_NAME = getClassName;
+		GET_METHOD_NAME = getMethodName;
+	}
+
+	private StackFrames() {
+		super();
+	}
+
+	/**
+	 * Captures at most maxDepth frames of the current call stack, skipping the
+	 * frames of the call registration classes on top of it.
+	 *
+	 * @param maxDepth maximum number of frames to capture
+	 * @return the captured frames
+	 */
+	static StackTraceElement[] callerFrames(int maxDepth) {
+		if (WALK == null) {
+			return callerFrames(new Throwable().getStackTrace(), maxDepth);
+		} else {
+			Function<Stream<Object>, StackTraceElement[]> framesWalker = frames -> frames
+					.filter(new SkipInternalFrames<>(StackFrames::getClassName)).limit(maxDepth)
+					.map(StackFrames::toStackTraceElement).toArray(StackTraceElement[]::new);
+			return (StackTraceElement[]) walk(framesWalker);
+		}
+	}
+
+	/**
+	 * Resolves the name of the method that invoked the call registration classes.
+	 * Only the frames up to that method are walked when the StackWalker API is
+	 * available.
+	 *
+	 * @return name of the calling method
+	 */
+	static String callerMethodName() {
+		if (WALK == null) {
+			StackTraceElement[] callerFrames = callerFrames(new Throwable().getStackTrace(), 1);
+			return callerFrames.length == 0 ? null : callerFrames[0].getMethodName();
+		} else {
+			Function<Stream<Object>, String> methodNameWalker = frames -> frames
+					.filter(new SkipInternalFrames<>(StackFrames::getClassName)).findFirst()
+					.map(StackFrames::getMethodName).orElse(null);
+			return (String) walk(methodNameWalker);
+		}
+	}
+
+	/**
+	 * Strips the frames of the call registration classes from the top of the given
+	 * stack trace and limits the result to maxDepth frames.
+	 *
+	 * @param stackTrace a resolved stack trace
+	 * @param maxDepth   maximum number of frames to return
+	 * @return the caller frames
+	 */
+	static StackTraceElement[] callerFrames(StackTraceElement[] stackTrace, int maxDepth) {
+		int start = 0;
+		while (start < stackTrace.length && isInternal(stackTrace[start].getClassName())) {
+			start++;
+		}
+		if (start == stackTrace.length) {
+			return NO_FRAMES;
+		}
+		int end = (int) Math.min(stackTrace.length, (long) start + maxDepth);
+		return Arrays.copyOfRange(stackTrace, start, end);
+	}
+
+	private static boolean isInternal(String className) {
+		return className.equals(Calls.class.getName()) || className.equals(StackFrames.class.getName());
+	}
+
+	private static Object walk(Function<Stream<Object>, ?> framesWalker) {
+		try {
+			return WALK.invoke(framesWalker);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException("Unable to walk the call stack.", t);
+		}
+	}
+
+	private static String getClassName(Object stackFrame) {
+		try {
+			return (String) GET_CLASS_NAME.invoke(stackFrame);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException("Unable to get class name of stack frame.", t);
+		}
+	}
+
+	private static String getMethodName(Object stackFrame) {
+		try {
+			return (String) GET_METHOD_NAME.invoke(stackFrame);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException("Unable to get method name of stack frame.", t);
+		}
+	}
+
+	private static StackTraceElement toStackTraceElement(Object stackFrame) {
+		try {
+			return (StackTraceElement) TO_STACK_TRACE_ELEMENT.invoke(stackFrame);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException("Unable to resolve stack frame.", t);
+		}
+	}
+
+	/**
+	 * Stateful predicate that rejects the frames of the call registration classes
+	 * until the first frame outside of them is encountered (a dropWhile for Java
+	 * 8 streams).
+	 */
+	private static class SkipInternalFrames<F> implements Predicate<F> {
+
+		private final Function<F, String> classNameFunction;
+		private boolean skipping = true;
+
+		public SkipInternalFrames(Function<F, String> classNameFunction) {
+			super();
+			this.classNameFunction = classNameFunction;
+		}
+
+		@Override
+		public boolean test(F frame) {
+			skipping = skipping && isInternal(classNameFunction.apply(frame));
+			return !skipping;
+		}
+
+	}
+
+}
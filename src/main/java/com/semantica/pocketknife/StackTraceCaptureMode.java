@@ -0,0 +1,34 @@
+package com.semantica.pocketknife;
+
+/**
+ * Determines how much of the call stack a {@link Calls} instance captures for
+ * every registered method call. The captured stack traces are only used for
+ * reporting, so tests that register many calls can trade diagnostic detail for
+ * speed and memory.
+ */
+public enum StackTraceCaptureMode {
+
+	/**
+	 * The complete stack trace is captured and resolved at registration time
+	 * (default).
+	 */
+	FULL,
+
+	/**
+	 * Only the top frames (starting at the mock method that registered the call)
+	 * are captured, up to the configured depth limit.
+	 */
+	DEPTH_LIMITED,
+
+	/**
+	 * The stack is captured in its unresolved form. Frames are only turned into
+	 * {@link StackTraceElement}s when a report is printed.
+	 */
+	LAZY,
+
+	/**
+	 * No stack trace is captured at all.
+	 */
+	NONE;
+
+}
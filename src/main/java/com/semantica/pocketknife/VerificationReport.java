@@ -0,0 +1,89 @@
+package com.semantica.pocketknife;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The result of verifying that no more method invocations remain on the mocks
+ * of a {@link MocksRegistry}. Reports which mocks still have remaining calls
+ * and what those calls are.
+ */
+public class VerificationReport {
+
+	/**
+	 * The remaining calls of a single mock.
+	 */
+	public static class MockReport {
+
+		private final Mock mock;
+		private final String remainingCalls;
+
+		public MockReport(Mock mock, String remainingCalls) {
+			super();
+			this.mock = mock;
+			this.remainingCalls = remainingCalls;
+		}
+
+		public Mock getMock() {
+			return mock;
+		}
+
+		/**
+		 * @return the report of the remaining calls, bounded by the report limits
+		 *         of the calls of the mock
+		 */
+		public String getRemainingCalls() {
+			return remainingCalls;
+		}
+
+		@Override
+		public String toString() {
+			return "Calls remaining on mock " + mock.getClass().getSimpleName() + ":" + System.lineSeparator()
+					+ remainingCalls;
+		}
+
+	}
+
+	private final int verifiedMocks;
+	private final List<MockReport> mockReports;
+
+	public VerificationReport(int verifiedMocks, List<MockReport> mockReports) {
+		super();
+		this.verifiedMocks = verifiedMocks;
+		this.mockReports = Collections.unmodifiableList(mockReports);
+	}
+
+	/**
+	 * @return true if none of the verified mocks has remaining calls
+	 */
+	public boolean isNoMoreMethodInvocationsAnywhere() {
+		return mockReports.isEmpty();
+	}
+
+	public int getVerifiedMocks() {
+		return verifiedMocks;
+	}
+
+	/**
+	 * @return the reports of the mocks that have remaining calls
+	 */
+	public List<MockReport> getMockReports() {
+		return mockReports;
+	}
+
+	public List<Mock> getMocksWithRemainingCalls() {
+		return mockReports.stream().map(MockReport::getMock).collect(Collectors.toList());
+	}
+
+	@Override
+	public String toString() {
+		if (mockReports.isEmpty()) {
+			return "No calls remaining on " + verifiedMocks + " mocks.";
+		}
+		return "Calls remaining on " + mockReports.size() + " of " + verifiedMocks + " mocks:"
+				+ System.lineSeparator() + mockReports.stream().map(MockReport::toString)
+						.collect(Collectors.joining(System.lineSeparator()));
+	}
+
+}
@@ -1,9 +1,15 @@
 package com.semantica.pocketknife;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
 public class WrappedSerializable<S extends Serializable> {
@@ -17,24 +23,155 @@ public class WrappedSerializable<S extends Serializable> {
 	private S serializable;
 	private static ObjectMapper objectToJsonMapper = new ObjectMapper();
 	private static ObjectMapper objectToYamlMapper = new ObjectMapper(new YAMLFactory());
+	// Writers are built once per serialized class, they do not close the streams
+	// they write to
+	private static final ClassValue<ObjectWriter> jsonWriters = new ClassValue<ObjectWriter>() {
+		@Override
+		protected ObjectWriter computeValue(Class<?> type) {
+			return objectToJsonMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		}
+	};
+	private static final ClassValue<ObjectWriter> yamlWriters = new ClassValue<ObjectWriter>() {
+		@Override
+		protected ObjectWriter computeValue(Class<?> type) {
+			return objectToYamlMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		}
+	};
 	private SerializationType defaultSerializationType;
+	private final boolean cacheSerializedForm;
+	private String json;
+	private String yaml;
 
 	public WrappedSerializable(S serializable, SerializationType defaultSerializationType) {
+		this(serializable, defaultSerializationType, false);
+	}
+
+	/**
+	 * Creates a wrapped serializable that optionally caches its serialized forms.
+	 * The cached forms are not updated when the object is modified, call
+	 * {@link #invalidate()} to have them serialized again.
+	 *
+	 * @param serializable             the wrapped object
+	 * @param defaultSerializationType the serialization type used by toString()
+	 * @param cacheSerializedForm      true if the object is only serialized once
+	 *                                 per serialization type
+	 */
+	public WrappedSerializable(S serializable, SerializationType defaultSerializationType,
+			boolean cacheSerializedForm) {
 		super();
 		this.serializable = serializable;
 		this.defaultSerializationType = defaultSerializationType;
+		this.cacheSerializedForm = cacheSerializedForm;
 	}
 
 	public S getObject() {
 		return serializable;
 	}
 
+	public boolean isCacheSerializedForm() {
+		return cacheSerializedForm;
+	}
+
+	/**
+	 * Discards the cached serialized forms, after the object was modified.
+	 */
+	public void invalidate() {
+		json = null;
+		yaml = null;
+	}
+
 	public String getJson() throws JsonProcessingException {
-		return objectToJsonMapper.writeValueAsString(serializable);
+		String serializedForm = json;
+		if (serializedForm == null) {
+			serializedForm = getWriter(SerializationType.JSON).writeValueAsString(serializable);
+			if (cacheSerializedForm) {
+				json = serializedForm;
+			}
+		}
+		return serializedForm;
 	}
 
 	public String getYaml() throws JsonProcessingException {
-		return objectToYamlMapper.writeValueAsString(serializable);
+		String serializedForm = yaml;
+		if (serializedForm == null) {
+			serializedForm = getWriter(SerializationType.YAML).writeValueAsString(serializable);
+			if (cacheSerializedForm) {
+				yaml = serializedForm;
+			}
+		}
+		return serializedForm;
+	}
+
+	/**
+	 * Writes the object in the default serialization type to the given writer,
+	 * without serializing it into an intermediate String (unless the serialized
+	 * form is cached). The writer is not closed.
+	 *
+	 * @param writer the destination
+	 * @throws IOException if serialization or writing fails
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		writeTo(writer, defaultSerializationType);
+	}
+
+	/**
+	 * @see #writeTo(Writer)
+	 */
+	public void writeTo(Writer writer, SerializationType serializationType) throws IOException {
+		String serializedForm = getCachedSerializedForm(serializationType);
+		if (serializedForm != null) {
+			writer.write(serializedForm);
+		} else {
+			getWriter(serializationType).writeValue(writer, serializable);
+		}
+	}
+
+	/**
+	 * Writes the object in the default serialization type to the given output
+	 * stream, UTF-8 encoded. The stream is not closed.
+	 *
+	 * @see #writeTo(Writer)
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		writeTo(outputStream, defaultSerializationType);
+	}
+
+	/**
+	 * @see #writeTo(OutputStream)
+	 */
+	public void writeTo(OutputStream outputStream, SerializationType serializationType) throws IOException {
+		String serializedForm = getCachedSerializedForm(serializationType);
+		if (serializedForm != null) {
+			outputStream.write(serializedForm.getBytes(StandardCharsets.UTF_8));
+		} else {
+			getWriter(serializationType).writeValue(outputStream, serializable);
+		}
+	}
+
+	private String getCachedSerializedForm(SerializationType serializationType) throws JsonProcessingException {
+		if (!cacheSerializedForm) {
+			return null;
+		}
+		switch (serializationType) {
+		case JSON:
+			return getJson();
+		case YAML:
+			return getYaml();
+		default:
+			throw new IllegalStateException("Unknown serialization type set.");
+		}
+	}
+
+	private ObjectWriter getWriter(SerializationType serializationType) {
+		Class<?> type = serializable == null ? Object.class : serializable.getClass();
+		switch (serializationType) {
+		case JSON:
+			return jsonWriters.get(type);
+		case YAML:
+			return yamlWriters.get(type);
+		default:
+			throw new IllegalStateException("Unknown serialization type set.");
+		}
 	}
 
 	@Override
@@ -0,0 +1,95 @@
+package com.semantica.pocketknife.junit;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import com.semantica.pocketknife.Mock;
+import com.semantica.pocketknife.MocksRegistry;
+import com.semantica.pocketknife.VerificationReport;
+
+/**
+ * JUnit Jupiter extension that provides every test with its own
+ * {@link MocksRegistry}, which is injected into test and lifecycle methods
+ * that declare a MocksRegistry parameter. After each test, the extension
+ * verifies that no more method invocations remain on the registered mocks,
+ * failing the test if they do, and resets their calls.
+ *
+ * The registry is kept in the store of the context of the test, so tests can
+ * be executed concurrently (junit.jupiter.execution.parallel.enabled) as long
+ * as they do not share mocks.
+ *
+ * <pre>
+ * &#64;ExtendWith(MocksRegistryExtension.class)
+ * public class ServiceTest {
+ *
+ * 	&#64;Test
+ * 	public void test(MocksRegistry mocksRegistry) {
+ * 		mocksRegistry.registerMock(repositoryMock);
+ * 		...
+ * 	}
+ *
+ * }
+ * </pre>
+ */
+public class MocksRegistryExtension implements BeforeEachCallback, AfterEachCallback, ParameterResolver {
+
+	private static final Namespace NAMESPACE = Namespace.create(MocksRegistryExtension.class);
+
+	@Override
+	public void beforeEach(ExtensionContext context) {
+		context.getStore(NAMESPACE).put(MocksRegistry.class, new MocksRegistry());
+	}
+
+	@Override
+	public void afterEach(ExtensionContext context) {
+		MocksRegistry mocksRegistry = context.getStore(NAMESPACE).remove(MocksRegistry.class, MocksRegistry.class);
+		if (mocksRegistry != null) {
+			verifyAndReset(mocksRegistry, context.getExecutionException().isPresent());
+		}
+	}
+
+	/**
+	 * Verifies the mocks of the registry, unless the test already failed, and
+	 * resets their calls right away, so mocks that are shared between tests do
+	 * not carry calls over to the next test.
+	 *
+	 * @throws AssertionError if calls remain on any of the mocks
+	 */
+	static void verifyAndReset(MocksRegistry mocksRegistry, boolean testFailed) {
+		try {
+			if (!testFailed) {
+				VerificationReport report = mocksRegistry.verifyAllMocks();
+				if (!report.isNoMoreMethodInvocationsAnywhere()) {
+					throw new AssertionError(report.toString());
+				}
+			}
+		} finally {
+			for (Mock mock : mocksRegistry.getMocks()) {
+				mock.getCalls().reset();
+			}
+		}
+	}
+
+	@Override
+	public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+		return parameterContext.getParameter().getType() == MocksRegistry.class
+				&& extensionContext.getTestMethod().isPresent();
+	}
+
+	@Override
+	public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+		MocksRegistry mocksRegistry = extensionContext.getStore(NAMESPACE).get(MocksRegistry.class,
+				MocksRegistry.class);
+		if (mocksRegistry == null) {
+			throw new ParameterResolutionException(
+					"No MocksRegistry is available outside of the execution of a test method.");
+		}
+		return mocksRegistry;
+	}
+
+}
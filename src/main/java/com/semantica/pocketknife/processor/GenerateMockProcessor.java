@@ -0,0 +1,432 @@
+package com.semantica.pocketknife.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import com.semantica.pocketknife.GenerateMock;
+
+/**
+ * Generates the proxy, recorder and mock classes for types annotated with
+ * {@link GenerateMock}. See the annotation for the generated classes.
+ */
+public class GenerateMockProcessor extends AbstractProcessor {
+
+	private Elements elements;
+	private Types types;
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(GenerateMock.class.getName());
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		elements = processingEnv.getElementUtils();
+		types = processingEnv.getTypeUtils();
+		for (Element element : roundEnv.getElementsAnnotatedWith(GenerateMock.class)) {
+			if (isSupported(element)) {
+				TypeElement type = (TypeElement) element;
+				try {
+					generate(type);
+				} catch (IOException e) {
+					error(type, "Could not generate the mock classes: " + e.getMessage());
+				}
+			}
+		}
+		return true;
+	}
+
+	private boolean isSupported(Element element) {
+		Set<Modifier> modifiers = element.getModifiers();
+		if (element.getKind() != ElementKind.INTERFACE && element.getKind() != ElementKind.CLASS) {
+			return error(element, "@GenerateMock can only be applied to interfaces and classes.");
+		} else if (modifiers.contains(Modifier.PRIVATE)) {
+			return error(element, "@GenerateMock cannot be applied to private types.");
+		} else if (((TypeElement) element).getNestingKind() == NestingKind.MEMBER
+				&& !modifiers.contains(Modifier.STATIC) && element.getKind() == ElementKind.CLASS) {
+			return error(element, "@GenerateMock cannot be applied to inner (non-static) classes.");
+		} else if (element.getKind() == ElementKind.CLASS && modifiers.contains(Modifier.FINAL)) {
+			return error(element, "@GenerateMock cannot be applied to final classes.");
+		} else if (element.getKind() == ElementKind.CLASS && !hasNoArgsConstructor(element)) {
+			return error(element, "@GenerateMock requires a non-private no-args constructor.");
+		} else if (declaresMockMethod((TypeElement) element)) {
+			return error(element, "@GenerateMock cannot be applied to types that declare getCalls() or reset(), "
+					+ "the generated mock implements these methods of Mock.");
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the type has a method without parameters that the generated
+	 *         mock would declare a second time, when implementing Mock
+	 */
+	private boolean declaresMockMethod(TypeElement type) {
+		return ElementFilter.methodsIn(elements.getAllMembers(type)).stream()
+				.anyMatch(method -> method.getParameters().isEmpty()
+						&& (method.getSimpleName().contentEquals("getCalls")
+								|| method.getSimpleName().contentEquals("reset")));
+	}
+
+	private boolean hasNoArgsConstructor(Element element) {
+		return ElementFilter.constructorsIn(element.getEnclosedElements()).stream()
+				.anyMatch(constructor -> constructor.getParameters().isEmpty()
+						&& !constructor.getModifiers().contains(Modifier.PRIVATE));
+	}
+
+	private boolean error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+		return false;
+	}
+
+	private void generate(TypeElement type) throws IOException {
+		List<ExecutableElement> methods = getOverridableMethods(type);
+		String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+		String baseName = getFlattenedName(type);
+		String visibility = type.getModifiers().contains(Modifier.PUBLIC) ? "public " : "";
+		String typeParameters = getTypeParameters(type.getTypeParameters());
+		String typeArguments = type.getTypeParameters().isEmpty() ? ""
+				: type.getTypeParameters().stream().map(Object::toString).collect(Collectors.joining(", ", "<", ">"));
+		String typeName = type.getQualifiedName() + typeArguments;
+		String supertypeClause = (type.getKind() == ElementKind.INTERFACE ? " implements " : " extends ") + typeName;
+
+		try (PrintWriter out = createSourceFile(type, packageName, baseName + "Proxy")) {
+			writeProxy(out, type, methods, visibility, baseName + "Proxy", typeParameters, supertypeClause);
+		}
+		try (PrintWriter out = createSourceFile(type, packageName, baseName + "Recorder")) {
+			writeRecorder(out, type, visibility, baseName, typeParameters, typeName);
+		}
+		try (PrintWriter out = createSourceFile(type, packageName, baseName + "Mock")) {
+			writeMock(out, type, methods, visibility, baseName + "Mock", typeParameters, supertypeClause);
+		}
+	}
+
+	private PrintWriter createSourceFile(TypeElement type, String packageName, String simpleName)
+			throws IOException {
+		String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter());
+		if (!packageName.isEmpty()) {
+			out.println("package " + packageName + ";");
+			out.println();
+		}
+		return out;
+	}
+
+	/**
+	 * @return the methods of the type that a subclass (in the same package) can
+	 *         override, except for the methods of java.lang.Object
+	 */
+	private List<ExecutableElement> getOverridableMethods(TypeElement type) {
+		PackageElement typePackage = elements.getPackageOf(type);
+		Map<String, ExecutableElement> methodsBySignature = new LinkedHashMap<>();
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+			Set<Modifier> modifiers = method.getModifiers();
+			TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+			if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)
+					|| modifiers.contains(Modifier.PRIVATE)
+					|| declaringType.getQualifiedName().contentEquals(Object.class.getName())
+					|| (!modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.PROTECTED)
+							&& !elements.getPackageOf(declaringType).equals(typePackage))) {
+				continue;
+			}
+			// Keep the most specific declaration of methods that are declared more than
+			// once in the type hierarchy
+			String signature = method.getSimpleName() + method.getParameters().stream()
+					.map(parameter -> types.erasure(parameter.asType()).toString())
+					.collect(Collectors.joining(",", "(", ")"));
+			ExecutableElement declaredMethod = methodsBySignature.get(signature);
+			if (declaredMethod == null || types.isSubtype(types.erasure(declaringType.asType()),
+					types.erasure(declaredMethod.getEnclosingElement().asType()))) {
+				methodsBySignature.put(signature, method);
+			}
+		}
+		return new ArrayList<>(methodsBySignature.values());
+	}
+
+	private String getFlattenedName(TypeElement type) {
+		String name = type.getSimpleName().toString();
+		for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing
+				.getEnclosingElement()) {
+			name = enclosing.getSimpleName() + "_" + name;
+		}
+		return name;
+	}
+
+	private String getTypeParameters(List<? extends TypeParameterElement> typeParameters) {
+		if (typeParameters.isEmpty()) {
+			return "";
+		}
+		return typeParameters.stream().map(typeParameter -> {
+			List<? extends TypeMirror> bounds = typeParameter.getBounds();
+			boolean unbounded = bounds.isEmpty()
+					|| (bounds.size() == 1 && bounds.get(0).toString().equals(Object.class.getName()));
+			return typeParameter.getSimpleName() + (unbounded ? ""
+					: " extends " + bounds.stream().map(Object::toString).collect(Collectors.joining(" & ")));
+		}).collect(Collectors.joining(", ", "<", ">"));
+	}
+
+	private void writeProxy(PrintWriter out, TypeElement type, List<ExecutableElement> methods, String visibility,
+			String className, String typeParameters, String supertypeClause) {
+		out.println("/**");
+		out.println(" * Proxy of {@link " + type.getQualifiedName() + "}, generated by @GenerateMock.");
+		out.println(" */");
+		out.println("@SuppressWarnings(\"unchecked\")");
+		out.println(visibility + "class " + className + typeParameters + supertypeClause + " {");
+		out.println();
+		out.println("\tpublic static final com.semantica.pocketknife.ProxyFactory FACTORY = new Factory();");
+		writeMethodConstants(out, methods);
+		out.println("\tprivate final com.semantica.pocketknife.ProxyInterceptor interceptor;");
+		out.println();
+		out.println("\tprivate static class Factory implements com.semantica.pocketknife.ProxyFactory {");
+		out.println();
+		out.println("\t\t@Override");
+		out.println("\t\tpublic boolean supports(Class<?> proxiedClass) {");
+		out.println("\t\t\treturn proxiedClass == " + types.erasure(type.asType()) + ".class;");
+		out.println("\t\t}");
+		out.println();
+		out.println("\t\t@Override");
+		out.println("\t\tpublic <T> T createProxy(Class<T> proxiedClass, "
+				+ "com.semantica.pocketknife.ProxyInterceptor interceptor) {");
+		out.println("\t\t\tif (!supports(proxiedClass)) {");
+		out.println("\t\t\t\tthrow new IllegalArgumentException(\"" + className
+				+ " cannot proxy \" + proxiedClass.getName() + \".\");");
+		out.println("\t\t\t}");
+		out.println("\t\t\treturn (T) new " + className + (typeParameters.isEmpty() ? "" : "<>") + "(interceptor);");
+		out.println("\t\t}");
+		out.println();
+		out.println("\t}");
+		out.println();
+		out.println("\tpublic " + className + "(com.semantica.pocketknife.ProxyInterceptor interceptor) {");
+		out.println("\t\tsuper();");
+		out.println("\t\tthis.interceptor = interceptor;");
+		out.println("\t}");
+		for (int i = 0; i < methods.size(); i++) {
+			ExecutableElement method = methods.get(i);
+			ExecutableType methodType = (ExecutableType) types.asMemberOf((DeclaredType) type.asType(), method);
+			TypeMirror returnType = methodType.getReturnType();
+			out.println();
+			writeMethodDeclaration(out, method, methodType);
+			out.println("\t\ttry {");
+			String invocation = "interceptor.intercept(this, METHOD_" + i + ", " + getArgsArray(method) + ")";
+			if (returnType.getKind() == TypeKind.VOID) {
+				out.println("\t\t\t" + invocation + ";");
+			} else if (returnType.getKind().isPrimitive()) {
+				out.println("\t\t\treturn (" + types.boxedClass((PrimitiveType) returnType).getQualifiedName() + ") "
+						+ invocation + ";");
+			} else {
+				out.println("\t\t\treturn (" + returnType + ") " + invocation + ";");
+			}
+			List<TypeMirror> rethrownTypes = getRethrownTypes(methodType);
+			for (TypeMirror rethrownType : rethrownTypes) {
+				out.println("\t\t} catch (" + rethrownType + " e) {");
+				out.println("\t\t\tthrow e;");
+			}
+			if (rethrownTypes.stream().noneMatch(rethrownType -> rethrownType.toString()
+					.equals(Throwable.class.getName()))) {
+				out.println("\t\t} catch (Throwable t) {");
+				out.println("\t\t\tthrow new java.lang.reflect.UndeclaredThrowableException(t);");
+			}
+			out.println("\t\t}");
+			out.println("\t}");
+		}
+		out.println();
+		writeMethodLookup(out);
+		out.println();
+		out.println("}");
+	}
+
+	private void writeRecorder(PrintWriter out, TypeElement type, String visibility, String baseName,
+			String typeParameters, String typeName) {
+		out.println("/**");
+		out.println(" * Method recorder of {@link " + type.getQualifiedName()
+				+ "}, generated by @GenerateMock. Its proxy");
+		out.println(" * is not generated at runtime.");
+		out.println(" */");
+		out.println(visibility + "class " + baseName + "Recorder" + typeParameters
+				+ " extends com.semantica.pocketknife.MethodRecorder<" + typeName + "> {");
+		out.println();
+		if (!typeParameters.isEmpty()) {
+			out.println("\t@SuppressWarnings(\"unchecked\")");
+		}
+		out.println("\tpublic " + baseName + "Recorder() {");
+		String recordedClass = types.erasure(type.asType()) + ".class";
+		out.println("\t\tsuper(" + (typeParameters.isEmpty() ? recordedClass
+				: "(Class<" + typeName + ">) (Class<?>) " + recordedClass) + ", " + baseName + "Proxy.FACTORY);");
+		out.println("\t}");
+		out.println();
+		out.println("}");
+	}
+
+	private void writeMock(PrintWriter out, TypeElement type, List<ExecutableElement> methods, String visibility,
+			String className, String typeParameters, String supertypeClause) {
+		out.println("/**");
+		out.println(" * Mock of {@link " + type.getQualifiedName()
+				+ "}, generated by @GenerateMock. Every method invocation");
+		out.println(" * is registered on its Calls instance, every method returns the default value of its");
+		out.println(" * return type.");
+		out.println(" */");
+		out.println(visibility + "class " + className + typeParameters + supertypeClause
+				+ (type.getKind() == ElementKind.INTERFACE ? ", " : " implements ")
+				+ "com.semantica.pocketknife.Mock {");
+		out.println();
+		writeMethodConstants(out, methods);
+		out.println("\tprotected final com.semantica.pocketknife.Calls calls = new com.semantica.pocketknife.Calls("
+				+ "java.lang.reflect.Method.class);");
+		out.println();
+		out.println("\t@Override");
+		out.println("\tpublic com.semantica.pocketknife.Calls getCalls() {");
+		out.println("\t\treturn calls;");
+		out.println("\t}");
+		out.println();
+		out.println("\t@Override");
+		out.println("\tpublic void reset() {");
+		out.println("\t\tcalls.reset();");
+		out.println("\t}");
+		for (int i = 0; i < methods.size(); i++) {
+			ExecutableElement method = methods.get(i);
+			ExecutableType methodType = (ExecutableType) types.asMemberOf((DeclaredType) type.asType(), method);
+			out.println();
+			writeMethodDeclaration(out, method, methodType);
+			out.println("\t\tcalls.registerCall(METHOD_" + i + ", " + getArgsArray(method) + ");");
+			if (methodType.getReturnType().getKind() != TypeKind.VOID) {
+				out.println("\t\treturn " + getDefaultValue(methodType.getReturnType()) + ";");
+			}
+			out.println("\t}");
+		}
+		out.println();
+		writeMethodLookup(out);
+		out.println();
+		out.println("}");
+	}
+
+	private void writeMethodConstants(PrintWriter out, List<ExecutableElement> methods) {
+		for (int i = 0; i < methods.size(); i++) {
+			ExecutableElement method = methods.get(i);
+			String parameterClasses = method.getParameters().stream()
+					.map(parameter -> ", " + types.erasure(parameter.asType()) + ".class")
+					.collect(Collectors.joining());
+			out.println("\tprivate static final java.lang.reflect.Method METHOD_" + i + " = lookUpMethod("
+					+ types.erasure(method.getEnclosingElement().asType()) + ".class, \"" + method.getSimpleName()
+					+ "\"" + parameterClasses + ");");
+		}
+	}
+
+	private void writeMethodLookup(PrintWriter out) {
+		out.println("\tprivate static java.lang.reflect.Method lookUpMethod(Class<?> declaringClass, String name, "
+				+ "Class<?>... parameterTypes) {");
+		out.println("\t\ttry {");
+		out.println("\t\t\treturn declaringClass.getDeclaredMethod(name, parameterTypes);");
+		out.println("\t\t} catch (NoSuchMethodException e) {");
+		out.println("\t\t\tthrow new IllegalStateException(\"Generated code is out of date with \" "
+				+ "+ declaringClass.getName() + \".\", e);");
+		out.println("\t\t}");
+		out.println("\t}");
+	}
+
+	private void writeMethodDeclaration(PrintWriter out, ExecutableElement method, ExecutableType methodType) {
+		Set<Modifier> modifiers = method.getModifiers();
+		String visibility = modifiers.contains(Modifier.PUBLIC)
+				|| method.getEnclosingElement().getKind() == ElementKind.INTERFACE ? "public "
+				: modifiers.contains(Modifier.PROTECTED) ? "protected " : "";
+		String typeParameters = getTypeParameters(method.getTypeParameters());
+		List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+		List<String> parameters = new ArrayList<>();
+		for (int i = 0; i < parameterTypes.size(); i++) {
+			TypeMirror parameterType = parameterTypes.get(i);
+			String parameterTypeName = method.isVarArgs() && i == parameterTypes.size() - 1
+					? ((ArrayType) parameterType).getComponentType() + "..."
+					: parameterType.toString();
+			parameters.add(parameterTypeName + " arg" + i);
+		}
+		String throwsClause = methodType.getThrownTypes().isEmpty() ? ""
+				: methodType.getThrownTypes().stream().map(Object::toString)
+						.collect(Collectors.joining(", ", " throws ", ""));
+		out.println("\t@Override");
+		out.println("\t" + visibility + (typeParameters.isEmpty() ? "" : typeParameters + " ")
+				+ methodType.getReturnType() + " " + method.getSimpleName() + "(" + String.join(", ", parameters)
+				+ ")" + throwsClause + " {");
+	}
+
+	private String getArgsArray(ExecutableElement method) {
+		List<String> args = new ArrayList<>();
+		for (int i = 0; i < method.getParameters().size(); i++) {
+			args.add("arg" + i);
+		}
+		return "new Object[] {" + (args.isEmpty() ? "" : " " + String.join(", ", args) + " ") + "}";
+	}
+
+	/**
+	 * @return the types that are rethrown as is by a proxy method: unchecked
+	 *         exceptions and the declared checked exceptions, leaving out those
+	 *         already caught by an earlier type
+	 */
+	private List<TypeMirror> getRethrownTypes(ExecutableType methodType) {
+		List<TypeMirror> rethrownTypes = new ArrayList<>();
+		rethrownTypes.add(elements.getTypeElement(RuntimeException.class.getName()).asType());
+		rethrownTypes.add(elements.getTypeElement(Error.class.getName()).asType());
+		for (TypeMirror thrownType : methodType.getThrownTypes()) {
+			if (rethrownTypes.stream().noneMatch(rethrownType -> types.isSubtype(thrownType, rethrownType))) {
+				rethrownTypes.removeIf(rethrownType -> types.isSubtype(rethrownType, thrownType));
+				rethrownTypes.add(thrownType);
+			}
+		}
+		return rethrownTypes;
+	}
+
+	private String getDefaultValue(TypeMirror type) {
+		switch (type.getKind()) {
+		case BOOLEAN:
+			return "false";
+		case CHAR:
+			return "'\\0'";
+		case BYTE:
+			return "(byte) 0";
+		case SHORT:
+			return "(short) 0";
+		case INT:
+			return "0";
+		case LONG:
+			return "0L";
+		case FLOAT:
+			return "0f";
+		case DOUBLE:
+			return "0d";
+		default:
+			return "null";
+		}
+	}
+
+}
@@ -1,6 +1,26 @@
 package com.semantica.pocketknife;
 
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 public class CallsTest {
 
@@ -9,4 +29,298 @@ public class CallsTest {
 		assert true;
 	}
 
+	@ParameterizedTest
+	@EnumSource(StackTraceCaptureMode.class)
+	public void callsAreVerifiedForEveryStackTraceCaptureMode(StackTraceCaptureMode stackTraceCaptureMode) {
+		Calls calls = new Calls(String.class, stackTraceCaptureMode);
+		calls.setStackTraceDepthLimit(2);
+		mockMethod(calls, 1);
+		mockMethod(calls, 1);
+
+		assertFalse(calls.verifyCall(1, "mockMethod", 1));
+		assertTrue(calls.verifyAndRemoveCall(2, "mockMethod", 1));
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void callsAreVerifiedWithExactAndMatchingArguments() {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE);
+		mockMethod(calls, 1);
+		mockMethod(calls, 2);
+		mockMethod(calls, 2);
+
+		assertTrue(calls.verifyCall(2, "mockMethod", 2));
+		assertTrue(calls.verifyCall(0, "mockMethod", 3));
+		assertThrows(IllegalArgumentException.class, () -> calls.verifyCall(1, "mockMethod", greaterThan(0)));
+		assertTrue(calls.verifyAndRemoveCall(2, "mockMethod", greaterThan(1)));
+		assertTrue(calls.verifyAndRemoveCall(1, "mockMethod", (Predicate<Integer>) arg -> arg < 2));
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void callsAreVerifiedStrictlyInInvocationOrder() {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE);
+		mockMethod(calls, 1);
+		mockMethod(calls, 2);
+		mockMethod(calls, 1);
+
+		assertFalse(calls.verifyStrictlyAndRemoveCall("mockMethod", 2));
+		assertTrue(calls.verifyStrictlyAndRemoveCall("mockMethod", 1));
+		assertTrue(calls.verifyStrictlyAndRemoveCall("mockMethod", greaterThan(1)));
+		assertTrue(calls.verifyCall(1, "mockMethod", 1));
+		assertTrue(calls.verifyStrictlyAndRemoveCall("mockMethod", 1));
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void callsAreAggregatedWithBoundedHistory() {
+		AggregateCallStore callStore = new AggregateCallStore(2);
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, false, callStore);
+		for (int i = 0; i < 10_000; i++) {
+			mockMethod(calls, i % 2);
+		}
+
+		MethodCall storedMethodCall = callStore.find(new MethodCall("mockMethod", new Object[] { 0 }));
+		assertEquals(2, callStore.getMethodCallInformation(storedMethodCall).size());
+		assertFalse(calls.verifyStrictlyAndRemoveCall("mockMethod", 0));
+		assertTrue(calls.verifyCall(5_000, "mockMethod", 0));
+		assertTrue(calls.verifyAndRemoveCall(5_000, "mockMethod", greaterThan(0)));
+		assertFalse(calls.verifyNoMoreMethodInvocations(false));
+		assertTrue(calls.verifyAndRemoveCall(5_000, "mockMethod", 0));
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void aggregatedCallsInHistoryAreVerifiedStrictly() {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, false, new AggregateCallStore(1));
+		mockMethod(calls, 1);
+		mockMethod(calls, 2);
+
+		assertTrue(calls.verifyStrictlyAndRemoveCall("mockMethod", 1));
+		assertTrue(calls.verifyStrictlyAndRemoveCall("mockMethod", 2));
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void callsAreVerifiedOnColumnarCallLog() {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, false, new ColumnarCallStore());
+		for (int i = 0; i < 1_000; i++) {
+			mockMethod(calls, i % 10);
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(calls.verifyStrictlyAndRemoveCall("mockMethod", i % 10));
+		}
+		assertTrue(calls.verifyCall(90, "mockMethod", 0));
+		assertThrows(IllegalArgumentException.class, () -> calls.verifyCall(90, "mockMethod", greaterThan(0)));
+		for (int i = 0; i < 10; i++) {
+			assertTrue(calls.verifyAndRemoveCall(90, "mockMethod", i));
+		}
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void columnarCallLogIndexFollowsRemovalAndCompaction() {
+		ColumnarCallStore callStore = new ColumnarCallStore();
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, false, callStore);
+		for (int i = 0; i < 1_000; i++) {
+			mockMethod(calls, i);
+			mockMethod(calls, i);
+		}
+		assertEquals(1_000, callStore.getMethodCalls().size());
+
+		for (int i = 0; i < 900; i++) {
+			assertTrue(calls.verifyAndRemoveCall(2, "mockMethod", i));
+		}
+		mockMethod(calls, 999);
+
+		assertEquals(100, callStore.getMethodCalls().size());
+		assertEquals(3, callStore.getInvocationCount(new MethodCall("mockMethod", new Object[] { 999 })));
+		assertEquals(0, callStore.getInvocationCount(new MethodCall("mockMethod", new Object[] { 0 })));
+		assertTrue(calls.reportRemainingCalls(false).contains("Args: [999], Times invoked: 3."));
+	}
+
+	@Test
+	public void columnarCallLogEvaluatesMatchersOncePerDistinctCall() {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, false, new ColumnarCallStore());
+		for (int i = 0; i < 1_000; i++) {
+			mockMethod(calls, i % 2);
+		}
+		AtomicInteger evaluations = new AtomicInteger();
+
+		assertTrue(calls.verifyAndRemoveCall(500, "mockMethod", (Predicate<Integer>) arg -> {
+			evaluations.incrementAndGet();
+			return arg > 0;
+		}));
+		assertEquals(2, evaluations.get());
+	}
+
+	@Test
+	public void columnarCallLogRestoresSequenceNumberOrderOnCompaction() {
+		ColumnarCallStore callStore = new ColumnarCallStore();
+		for (int sequenceNo = 0; sequenceNo < 200; sequenceNo += 2) {
+			callStore.add("mockMethod", new Object[] { sequenceNo + 1 }, sequenceNo + 1, null);
+			callStore.add("mockMethod", new Object[] { sequenceNo }, sequenceNo, null);
+		}
+
+		for (int sequenceNo = 0; sequenceNo < 150; sequenceNo++) {
+			MethodCall methodCall = new MethodCall("mockMethod", new Object[] { sequenceNo });
+			assertTrue(callStore.removeInvocation(methodCall, sequenceNo));
+		}
+		assertEquals(50, callStore.getMethodCalls().size());
+		assertEquals(150, callStore.getMethodCallInformation(callStore.getMethodCalls().iterator().next()).iterator()
+				.next().getMethodInvocationSequenceNo());
+	}
+
+	@Test
+	public void removedCallsAreReleased() throws InterruptedException {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE);
+		WeakReference<Object> argument = registerAndRemoveCall(calls);
+		for (int i = 0; i < 50 && argument.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(argument.get());
+	}
+
+	@Test
+	public void pooledThreadsDoNotRetainRegisteredCalls() throws Exception {
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			WeakReference<Object> argument = registerCallInThread(executorService);
+			for (int i = 0; i < 50 && argument.get() != null; i++) {
+				System.gc();
+				Thread.sleep(10);
+			}
+
+			assertNull(argument.get());
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	private WeakReference<Object> registerCallInThread(ExecutorService executorService) throws Exception {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, true);
+		Object argument = new Object();
+		executorService.submit(() -> mockMethod(calls, argument)).get();
+		return new WeakReference<>(argument);
+	}
+
+	@Test
+	public void callsAreRecordedByPooledThreadsAfterReset() throws Exception {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, true);
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			executorService.submit(() -> mockMethod(calls, 1)).get();
+			calls.reset();
+			executorService.submit(() -> mockMethod(calls, 2)).get();
+		} finally {
+			executorService.shutdown();
+		}
+
+		assertTrue(calls.verifyAndRemoveCall(0, "mockMethod", 1));
+		assertTrue(calls.verifyStrictlyAndRemoveCall("mockMethod", 2));
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	private WeakReference<Object> registerAndRemoveCall(Calls calls) {
+		Object argument = new Object();
+		mockMethod(calls, argument);
+		assertTrue(calls.verifyAndRemoveCall(1, "mockMethod", argument));
+		return new WeakReference<>(argument);
+	}
+
+	@Test
+	public void remainingCallsAreReportedOnce() {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE);
+		assertNull(calls.reportRemainingCalls(false));
+		mockMethod(calls, 1);
+
+		String remainingCalls = calls.reportRemainingCalls(false);
+		assertTrue(remainingCalls.contains("mockMethod"));
+		assertTrue(calls.verifyAndRemoveCall(1, "mockMethod", 1));
+		assertNull(calls.reportRemainingCalls(false));
+	}
+
+	@Test
+	public void reportIsBoundedByCallAndFrameLimits() throws IOException {
+		// The columnar call log reports method calls in order of first invocation
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.FULL, false, new ColumnarCallStore());
+		for (int i = 0; i < 5; i++) {
+			mockMethod(calls, i);
+			mockMethod(calls, 0);
+		}
+
+		StringBuilder report = new StringBuilder();
+		calls.writeReport(report, true, 2, 1);
+
+		String[] lines = report.toString().split(System.lineSeparator());
+		assertEquals(" * Method: mockMethod, Args: [0], Times invoked: 6, Stack traces:", lines[0]);
+		assertTrue(lines[2].matches(" \\|\t-> .*mockMethod.*"));
+		assertTrue(lines[3].matches(" \\|\t-> \\.\\.\\. \\d+ more frames"));
+		assertEquals(" |__[ 4 more invocations not reported ]", lines[7]);
+		assertEquals(" * (3 more method calls not reported)", lines[lines.length - 1]);
+		assertThrows(IllegalArgumentException.class, () -> calls.writeReport(report, true, 0, 1));
+	}
+
+	@Test
+	public void callsRegisteredConcurrentlyAreAllRecorded() throws Exception {
+		Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE, true);
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int thread = 0; thread < 8; thread++) {
+			final int arg = thread;
+			futures.add(executorService.submit(() -> {
+				for (int i = 0; i < 1000; i++) {
+					mockMethod(calls, arg);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executorService.shutdown();
+
+		for (int thread = 0; thread < 8; thread++) {
+			assertTrue(calls.verifyAndRemoveCall(1000, "mockMethod", thread));
+		}
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void concurrentlyRecordedCallsAreAggregatedWithoutVerification() throws Exception {
+		AggregateCallStore callStore = new AggregateCallStore(2);
+		Calls calls = new Calls(Method.class, StackTraceCaptureMode.NONE, true, callStore);
+		Method method = Object.class.getMethod("toString");
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int thread = 0; thread < 4; thread++) {
+			futures.add(executorService.submit(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					calls.registerCall(method);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executorService.shutdown();
+
+		// At most a full buffer per thread has not reached the call store yet
+		MethodCall methodCall = new MethodCall(method, new Object[0]);
+		assertTrue(callStore.getInvocationCount(methodCall) > 40_000 - 4 * RegistrationBuffers.FLUSH_THRESHOLD);
+		assertEquals(2, callStore.getMethodCallInformation(methodCall).size());
+		assertTrue(calls.verifyAndRemoveCall(40_000, method));
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+	}
+
+	private void mockMethod(Calls calls, int arg) {
+		calls.registerCall(arg);
+	}
+
+	private void mockMethod(Calls calls, Object arg) {
+		calls.registerCall(arg);
+	}
+
 }
@@ -0,0 +1,214 @@
+package com.semantica.pocketknife;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.Matchers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class MethodRecorderTest {
+
+	public static class Service {
+
+		public Service(String name) {
+		}
+
+		public String getName() {
+			return "name";
+		}
+
+		public int count(String key) {
+			return 1;
+		}
+
+		public long getId() {
+			return 1;
+		}
+
+		public double getAmount() {
+			return 1;
+		}
+
+		public char getInitial() {
+			return 'n';
+		}
+
+		public byte getFlags() {
+			return 1;
+		}
+
+		public void execute(Runnable task) {
+		}
+
+		public void update(long id, Runnable task) {
+		}
+
+		public void transfer(AtomicInteger from, AtomicInteger to) {
+		}
+
+	}
+
+	public interface Repository {
+
+		public String find(long id);
+
+		public int size();
+
+	}
+
+	public static Stream<ProxyFactory> interfaceProxyFactories() {
+		return Stream.of(new JdkProxyFactory(), new CglibProxyFactory(), ProxyFactory.getDefault());
+	}
+
+	@ParameterizedTest
+	@MethodSource("interfaceProxyFactories")
+	public void interfaceMethodCallsAreCapturedByEveryProxyFactory(ProxyFactory proxyFactory) {
+		MethodRecorder<Repository> recorder = MethodRecorder.recordInvocationsOn(Repository.class, proxyFactory);
+
+		assertEquals(new MethodCall(recorder.getMethod(recorder.getProxy().find(1)), new Object[] { 1L }),
+				recorder.getMethodCall(recorder.getProxy().find(1)));
+		assertEquals(new MethodCall(recorder.getMethod(recorder.getProxy().size()), new Object[0]),
+				recorder.getMethodCall(recorder.getProxy().size()));
+	}
+
+	@Test
+	public void classesCannotBeProxiedByJdkProxyFactory() {
+		assertThrows(IllegalArgumentException.class,
+				() -> MethodRecorder.recordInvocationsOn(Service.class, new JdkProxyFactory()));
+	}
+
+	@Test
+	public void proxiesReturnDefaultValuesForPrimitiveReturnTypes() {
+		MethodRecorder<Service> recorder = MethodRecorder.recordInvocationsOn(Service.class);
+
+		assertEquals("getId", recorder.getMethodName(recorder.getProxy().getId()));
+		assertEquals("getAmount", recorder.getMethodName(recorder.getProxy().getAmount()));
+		assertEquals("getInitial", recorder.getMethodName(recorder.getProxy().getInitial()));
+		assertEquals("getFlags", recorder.getMethodName(recorder.getProxy().getFlags()));
+		assertEquals(0L, recorder.getProxy().getId());
+		assertEquals('\0', recorder.getProxy().getInitial());
+	}
+
+	@Test
+	public void matchingArgumentsSubstituteTheirIdentifierValues() {
+		MethodRecorder<Service> recorder = MethodRecorder.recordInvocationsOn(Service.class);
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+			}
+
+			@Override
+			public boolean equals(Object obj) {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+
+		MethodCall methodCall = recorder.getMethodCall(() -> recorder.getProxy().update(
+				recorder.storeAndCreateIdInstanceOfTypeArgument(Matchers.greaterThan(1L), Long.class), task));
+		assertTrue(methodCall.getArgs()[0] instanceof Matcher);
+		assertSame(task, methodCall.getArgs()[1]);
+
+		Predicate<Runnable> isTask = runnable -> runnable == task;
+		methodCall = recorder.getMethodCall(() -> recorder.getProxy().update(2L,
+				recorder.storeAndCreateIdInstanceOfTypeArgument(isTask, Runnable.class, 1)));
+		assertEquals(2L, methodCall.getArgs()[0]);
+		assertSame(isTask, methodCall.getArgs()[1]);
+	}
+
+	@Test
+	public void numbersOtherThanPrimitiveWrappersAreIdentifiedByIdentity() {
+		MethodRecorder<Service> recorder = MethodRecorder.recordInvocationsOn(Service.class);
+		AtomicInteger from = new AtomicInteger(0);
+		Predicate<AtomicInteger> isPositive = value -> value.get() > 0;
+
+		MethodCall methodCall = recorder.getMethodCall(() -> recorder.getProxy().transfer(from,
+				recorder.storeAndCreateIdInstanceOfTypeArgument(isPositive, AtomicInteger.class)));
+		assertSame(from, methodCall.getArgs()[0]);
+		assertSame(isPositive, methodCall.getArgs()[1]);
+	}
+
+	@Test
+	public void recordersOfTheSameClassShareTheirProxyClass() {
+		MethodRecorder<Service> recorder1 = MethodRecorder.recordInvocationsOn(Service.class);
+		MethodRecorder<Service> recorder2 = MethodRecorder.recordInvocationsOn(Service.class);
+
+		assertNotSame(recorder1.getProxy(), recorder2.getProxy());
+		assertSame(recorder1.getProxy().getClass(), recorder2.getProxy().getClass());
+	}
+
+	@Test
+	public void recordersOfTheSameClassRecordIndependently() {
+		MethodRecorder<Service> recorder1 = MethodRecorder.recordInvocationsOn(Service.class);
+		MethodRecorder<Service> recorder2 = MethodRecorder.recordInvocationsOn(Service.class);
+
+		assertEquals("getName", recorder1.getMethodName(recorder1.getProxy().getName()));
+		assertEquals("count", recorder2.getMethodName(recorder2.getProxy().count("key")));
+		assertEquals("getName", recorder1.getMethodName());
+	}
+
+	@Test
+	public void compiledMethodCallsAreBoundToNewArguments() {
+		MethodRecorder<Service> recorder = MethodRecorder.recordInvocationsOn(Service.class);
+		Calls calls = new Calls(Method.class);
+		for (int i = 0; i < 10; i++) {
+			calls.registerCall(recorder.getMethod(recorder.getProxy().count("key" + i)), "key" + i);
+		}
+
+		MethodCallHandle count = recorder.compile(() -> recorder.getProxy().count(null), 0);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(calls.verifyAndRemoveCall(1, count.bind("key" + i)));
+		}
+		assertTrue(calls.verifyNoMoreMethodInvocations());
+		assertThrows(IllegalArgumentException.class, () -> count.bind());
+		assertThrows(IllegalArgumentException.class, () -> recorder.compile(() -> recorder.getProxy().getId(), 0));
+	}
+
+	@Test
+	public void recorderIsSharedByParallelThreads() throws Exception {
+		MethodRecorder<Service> recorder = MethodRecorder.recordInvocationsOn(Service.class);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				final Runnable task = () -> {
+				};
+				results.add(executor.submit(() -> {
+					boolean recorded = true;
+					for (int i = 0; i < 1_000; i++) {
+						recorded &= "getId".equals(recorder.getMethodName(recorder.getProxy().getId()));
+						MethodCall methodCall = recorder.getMethodCall(() -> recorder.getProxy().execute(recorder
+								.storeAndCreateIdInstanceOfTypeArgument(Matchers.sameInstance(task), Runnable.class)));
+						recorded &= "execute".equals(((Method) methodCall.getMethod()).getName())
+								&& ((Matcher<?>) methodCall.getArgs()[0]).matches(task);
+					}
+					return recorded;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
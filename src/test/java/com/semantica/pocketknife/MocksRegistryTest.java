@@ -0,0 +1,198 @@
+package com.semantica.pocketknife;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.Test;
+
+public class MocksRegistryTest {
+
+	public static class TestMock implements Mock {
+
+		private final Calls calls = new Calls(String.class, StackTraceCaptureMode.NONE);
+
+		public void mockMethod(int arg) {
+			calls.registerCall(arg);
+		}
+
+		@Override
+		public Calls getCalls() {
+			return calls;
+		}
+
+		@Override
+		public void reset() {
+			calls.reset();
+		}
+
+	}
+
+	public static class MutableMock extends TestMock {
+
+		private int state;
+
+		@Override
+		public int hashCode() {
+			return state++;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	@Test
+	public void mocksAreRegisteredByIdentity() {
+		MocksRegistry mocksRegistry = new MocksRegistry();
+		MutableMock mock = new MutableMock();
+		assertTrue(mocksRegistry.registerMock(mock));
+		assertFalse(mocksRegistry.registerMock(mock));
+		assertTrue(mocksRegistry.registerMock(new MutableMock()));
+		assertEquals(2, mocksRegistry.getMocks().size());
+
+		mocksRegistry.deregisterMock(mock);
+		assertEquals(1, mocksRegistry.getMocks().size());
+		assertThrows(IllegalStateException.class, () -> mocksRegistry.deregisterMock(mock));
+	}
+
+	@Test
+	public void mockProvidersAreResolvedOnce() {
+		MocksRegistry mocksRegistry = new MocksRegistry();
+		AtomicInteger resolved = new AtomicInteger();
+		TestMock registeredMock = new TestMock();
+		TestMock providedMock = new TestMock();
+		Provider<TestMock> mockProvider = () -> {
+			resolved.incrementAndGet();
+			return providedMock;
+		};
+		mocksRegistry.registerMock(registeredMock);
+		assertTrue(mocksRegistry.registerMockProvider(mockProvider));
+		assertFalse(mocksRegistry.registerMockProvider(mockProvider));
+
+		mocksRegistry.deregisterMock(registeredMock);
+		assertEquals(0, resolved.get());
+		mocksRegistry.deregisterMock(providedMock);
+		assertEquals(1, resolved.get());
+		assertTrue(mocksRegistry.verifyNoMoreMethodInvocationsAnywhere());
+		assertEquals(1, resolved.get());
+
+		assertTrue(mocksRegistry.registerMockProvider(mockProvider));
+		assertEquals(1, mocksRegistry.getMocks().size());
+		assertEquals(2, resolved.get());
+	}
+
+	@Test
+	public void weaklyReferencedMocksAreCollected() throws InterruptedException {
+		MocksRegistry mocksRegistry = new MocksRegistry(true);
+		TestMock retainedMock = new TestMock();
+		mocksRegistry.registerMock(retainedMock);
+		WeakReference<TestMock> reference = new WeakReference<>(new TestMock());
+		mocksRegistry.registerMock(reference.get());
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(reference.get());
+		assertEquals(1, mocksRegistry.getMocks().size());
+		assertSame(retainedMock, mocksRegistry.getMocks().get(0));
+	}
+
+	@Test
+	public void allMocksAreVerifiedInParallel() {
+		MocksRegistry mocksRegistry = new MocksRegistry();
+		List<TestMock> mocks = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			TestMock mock = new TestMock();
+			mock.mockMethod(i);
+			mocksRegistry.registerMock(mock);
+			mocks.add(mock);
+		}
+		TestMock providedMock = new TestMock();
+		mocksRegistry.registerMockProvider(() -> providedMock);
+		for (int i = 1; i < mocks.size(); i++) {
+			assertTrue(mocks.get(i).getCalls().verifyAndRemoveCall(1, "mockMethod", i));
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		VerificationReport report;
+		try {
+			report = mocksRegistry.verifyAllMocks(pool);
+		} finally {
+			pool.shutdown();
+		}
+
+		assertFalse(report.isNoMoreMethodInvocationsAnywhere());
+		assertEquals(101, report.getVerifiedMocks());
+		assertEquals(1, report.getMockReports().size());
+		assertSame(mocks.get(0), report.getMocksWithRemainingCalls().get(0));
+		assertTrue(report.getMockReports().get(0).getRemainingCalls().contains("mockMethod"));
+		assertFalse(mocksRegistry.verifyNoMoreMethodInvocationsAnywhere());
+
+		assertTrue(mocks.get(0).getCalls().verifyAndRemoveCall(1, "mockMethod", 0));
+		assertTrue(mocksRegistry.verifyNoMoreMethodInvocationsAnywhere());
+	}
+
+	@Test
+	public void resetDiscardsCallsOfAllMocks() {
+		MocksRegistry mocksRegistry = new MocksRegistry();
+		TestMock mock = new TestMock();
+		TestMock deregisteredMock = new TestMock();
+		mocksRegistry.registerMock(mock);
+		mocksRegistry.registerMock(deregisteredMock);
+		mock.mockMethod(1);
+		deregisteredMock.mockMethod(1);
+		mocksRegistry.deregisterMock(deregisteredMock);
+
+		mocksRegistry.reset();
+		mock.mockMethod(2);
+
+		assertTrue(mock.getCalls().verifyAndRemoveCall(0, "mockMethod", 1));
+		assertTrue(mock.getCalls().verifyStrictlyAndRemoveCall("mockMethod", 2));
+		assertTrue(mocksRegistry.verifyNoMoreMethodInvocationsAnywhere());
+		assertNull(deregisteredMock.getCalls().getEpoch());
+		assertTrue(deregisteredMock.getCalls().verifyAndRemoveCall(1, "mockMethod", 1));
+	}
+
+	@Test
+	public void resetIsAppliedBeforeDeregistering() {
+		MocksRegistry mocksRegistry = new MocksRegistry();
+		TestMock mock = new TestMock();
+		mocksRegistry.registerMock(mock);
+		mock.mockMethod(1);
+
+		mocksRegistry.reset();
+		mocksRegistry.deregisterMock(mock);
+
+		assertTrue(mock.getCalls().verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void resetIsAppliedBeforeRegisteringInAnotherRegistry() {
+		MocksRegistry mocksRegistry = new MocksRegistry();
+		TestMock mock = new TestMock();
+		mocksRegistry.registerMock(mock);
+		mock.mockMethod(1);
+
+		mocksRegistry.reset();
+		MocksRegistry otherMocksRegistry = new MocksRegistry();
+		otherMocksRegistry.registerMock(mock);
+
+		assertTrue(otherMocksRegistry.verifyNoMoreMethodInvocationsAnywhere());
+	}
+
+}
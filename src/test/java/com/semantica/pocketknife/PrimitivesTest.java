@@ -0,0 +1,107 @@
+package com.semantica.pocketknife;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class PrimitivesTest {
+
+	public interface Identified {
+
+		public int getId();
+
+	}
+
+	public static abstract class AbstractIdentified implements Identified {
+
+	}
+
+	@ParameterizedTest
+	@ValueSource(classes = { Identified.class, AbstractIdentified.class })
+	public void identifierValueClassesAreGeneratedOnce(Class<?> clazz) {
+		ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+		Object first = Primitives.identifierValue(clazz);
+		long loadedClassCount = classLoading.getTotalLoadedClassCount();
+		for (int i = 0; i < 1_000; i++) {
+			Object identifierValue = Primitives.identifierValue(clazz);
+			assertSame(first.getClass(), identifierValue.getClass());
+			assertNotEquals(first, identifierValue);
+		}
+		// Allow for classes loaded by the test itself, but not for one per identifier
+		assertTrue(classLoading.getTotalLoadedClassCount() - loadedClassCount < 100);
+	}
+
+	@ParameterizedTest
+	@ValueSource(classes = { Identified.class, AbstractIdentified.class })
+	public void identifierValuesReturnDefaultValues(Class<? extends Identified> clazz) {
+		assertEquals(0, Primitives.identifierValue(clazz).getId());
+	}
+
+	@Test
+	public void jdkProxyIdentifierValuesReturnDefaultValues() {
+		@SuppressWarnings("unchecked")
+		Comparable<Object> identifierValue = Primitives.identifierValue(Comparable.class);
+		assertTrue(Proxy.isProxyClass(identifierValue.getClass()));
+		assertEquals(0, identifierValue.compareTo("value"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(classes = { Identified.class, AbstractIdentified.class })
+	public void identifierValuesDescribeTheirRequestedClass(Class<?> clazz) {
+		Object identifierValue = Primitives.identifierValue(clazz);
+		assertEquals("Identifier dummy instance of class: " + clazz + ", hashCode: "
+				+ System.identityHashCode(identifierValue), identifierValue.toString());
+		assertEquals(identifierValue, identifierValue);
+	}
+
+	@ParameterizedTest
+	@ValueSource(classes = { Identified.class, AbstractIdentified.class })
+	public void identifierValuesAreReclaimed(Class<?> clazz) throws InterruptedException {
+		WeakReference<Object> reference = new WeakReference<>(Primitives.identifierValue(clazz));
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+	}
+
+	@ParameterizedTest
+	@ValueSource(classes = { char.class, short.class, int.class, long.class, float.class, double.class })
+	public void primitiveIdentifierValuesAreUniqueAcrossThreads(Class<?> clazz) {
+		Set<Object> identifierValues = ConcurrentHashMap.newKeySet();
+		IntStream.range(0, 8).parallel().forEach(thread -> {
+			for (int i = 0; i < 500; i++) {
+				Object identifierValue = Primitives.identifierValue(clazz);
+				assertTrue(identifierValues.add(identifierValue), "Duplicate identifier value " + identifierValue);
+			}
+		});
+	}
+
+	@Test
+	public void primitiveIdentifierValuesHaveTheRequestedType() {
+		assertEquals(Character.class, Primitives.identifierValue(char.class).getClass());
+		assertEquals(Character.class, Primitives.identifierValue(Character.class).getClass());
+		List<Boolean> booleans = IntStream.range(0, 2).mapToObj(i -> Primitives.identifierValue(boolean.class))
+				.collect(Collectors.toList());
+		assertNotEquals(booleans.get(0), booleans.get(1));
+		assertTrue(Primitives.identifierValue(int.class) < 0);
+		assertTrue(Primitives.identifierValue(double.class) < 0);
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.semantica.pocketknife;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.semantica.pocketknife.WrappedSerializable.SerializationType;
+
+public class WrappedSerializableTest {
+
+	public static class Dto implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private String name;
+
+		public Dto(String name) {
+			super();
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+	}
+
+	@ParameterizedTest
+	@EnumSource(SerializationType.class)
+	public void serializedFormIsStreamed(SerializationType serializationType) throws IOException {
+		WrappedSerializable<Dto> wrappedDto = new WrappedSerializable<>(new Dto("name"), serializationType);
+		StringWriter writer = new StringWriter();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		wrappedDto.writeTo(writer);
+		wrappedDto.writeTo(outputStream);
+		// Neither destination is closed
+		writer.write("!");
+		outputStream.write('!');
+
+		assertEquals(wrappedDto.toString() + "!", writer.toString());
+		assertEquals(wrappedDto.toString() + "!", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void serializedFormIsCachedUntilInvalidated() throws IOException {
+		Dto dto = new Dto("name");
+		WrappedSerializable<Dto> wrappedDto = new WrappedSerializable<>(dto, SerializationType.JSON, true);
+		String json = wrappedDto.getJson();
+		dto.setName("other name");
+
+		assertSame(json, wrappedDto.toString());
+		StringWriter writer = new StringWriter();
+		wrappedDto.writeTo(writer);
+		assertEquals(json, writer.toString());
+
+		wrappedDto.invalidate();
+		assertNotSame(json, wrappedDto.getJson());
+		assertEquals("{\"name\":\"other name\"}", wrappedDto.getJson());
+		assertSame(wrappedDto.getJson(), wrappedDto.getJson());
+	}
+
+	@Test
+	public void nullIsSerialized() throws IOException {
+		assertEquals("null", new WrappedSerializable<Dto>(null, SerializationType.JSON).getJson());
+	}
+
+}
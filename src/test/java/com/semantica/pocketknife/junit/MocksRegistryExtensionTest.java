@@ -0,0 +1,141 @@
+package com.semantica.pocketknife.junit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import com.semantica.pocketknife.MocksRegistry;
+import com.semantica.pocketknife.MocksRegistryTest.TestMock;
+
+public class MocksRegistryExtensionTest {
+
+	/**
+	 * Tests that are executed concurrently, each with its own registry. Only run
+	 * through the launcher by {@link MocksRegistryExtensionTest}, which enables
+	 * parallel execution for these tests only.
+	 */
+	@ExtendWith(MocksRegistryExtension.class)
+	@Execution(ExecutionMode.CONCURRENT)
+	public static class ConcurrentTests {
+
+		private static final Set<MocksRegistry> registries = Collections
+				.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+		private MocksRegistry beforeEachMocksRegistry;
+
+		@BeforeEach
+		public void setUp(MocksRegistry mocksRegistry) {
+			beforeEachMocksRegistry = mocksRegistry;
+		}
+
+		@RepeatedTest(8)
+		public void everyTestHasItsOwnRegistry(MocksRegistry mocksRegistry) {
+			assertSame(beforeEachMocksRegistry, mocksRegistry);
+			assertTrue(registries.add(mocksRegistry));
+			TestMock mock = new TestMock();
+			mocksRegistry.registerMock(mock);
+			mock.mockMethod(1);
+			assertTrue(mock.getCalls().verifyAndRemoveCall(1, "mockMethod", 1));
+		}
+
+	}
+
+	/**
+	 * Tests that share a mock, of which the first leaves calls behind. Only run
+	 * through the launcher by {@link MocksRegistryExtensionTest} (Surefire skips
+	 * nested classes).
+	 */
+	@ExtendWith(MocksRegistryExtension.class)
+	@Execution(ExecutionMode.SAME_THREAD)
+	@TestMethodOrder(OrderAnnotation.class)
+	public static class SharedMockTests {
+
+		private static final TestMock sharedMock = new TestMock();
+
+		@Test
+		@Order(1)
+		public void leaveCallsBehind(MocksRegistry mocksRegistry) {
+			mocksRegistry.registerMock(sharedMock);
+			sharedMock.mockMethod(1);
+		}
+
+		@Test
+		@Order(2)
+		public void verifyNoCalls(MocksRegistry mocksRegistry) {
+			mocksRegistry.registerMock(sharedMock);
+			sharedMock.mockMethod(2);
+			assertTrue(sharedMock.getCalls().verifyStrictlyAndRemoveCall("mockMethod", 2));
+		}
+
+	}
+
+	@Test
+	public void concurrentTestsHaveTheirOwnRegistry() {
+		Launcher launcher = LauncherFactory.create();
+		SummaryGeneratingListener listener = new SummaryGeneratingListener();
+		launcher.execute(LauncherDiscoveryRequestBuilder.request().selectors(selectClass(ConcurrentTests.class))
+				.configurationParameter("junit.jupiter.execution.parallel.enabled", "true").build(), listener);
+
+		TestExecutionSummary summary = listener.getSummary();
+		assertEquals(0, summary.getTestsFailedCount());
+		assertEquals(8, summary.getTestsSucceededCount());
+	}
+
+	@Test
+	public void remainingCallsFailTheTestAndAreReset() {
+		MocksRegistry mocksRegistry = new MocksRegistry();
+		TestMock mock = new TestMock();
+		mocksRegistry.registerMock(mock);
+		mock.mockMethod(1);
+
+		assertThrows(AssertionError.class, () -> MocksRegistryExtension.verifyAndReset(mocksRegistry, false));
+		assertTrue(mocksRegistry.verifyNoMoreMethodInvocationsAnywhere());
+	}
+
+	@Test
+	public void failedTestsAreNotVerified() {
+		MocksRegistry failedTestMocksRegistry = new MocksRegistry();
+		TestMock mock = new TestMock();
+		failedTestMocksRegistry.registerMock(mock);
+		mock.mockMethod(1);
+
+		MocksRegistryExtension.verifyAndReset(failedTestMocksRegistry, true);
+		assertTrue(failedTestMocksRegistry.verifyNoMoreMethodInvocationsAnywhere());
+	}
+
+	@Test
+	public void sharedMocksDoNotCarryCallsOverToTheNextTest() {
+		Launcher launcher = LauncherFactory.create();
+		SummaryGeneratingListener listener = new SummaryGeneratingListener();
+		launcher.execute(LauncherDiscoveryRequestBuilder.request().selectors(selectClass(SharedMockTests.class))
+				.build(), listener);
+
+		TestExecutionSummary summary = listener.getSummary();
+		assertEquals(1, summary.getTestsFailedCount());
+		assertEquals(1, summary.getTestsSucceededCount());
+		assertEquals("leaveCallsBehind", summary.getFailures().get(0).getTestIdentifier().getDisplayName()
+				.replace("(MocksRegistry)", ""));
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.semantica.pocketknife.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+
+import com.semantica.pocketknife.GenerateMock;
+import com.semantica.pocketknife.MethodCall;
+
+public class GenerateMockProcessorTest {
+
+	@GenerateMock
+	public interface Repository<T> {
+
+		public T find(long id) throws IOException;
+
+		public List<T> findAll(String... names);
+
+		public <S extends T> void save(S entity);
+
+		public boolean isEmpty();
+
+		public default int size() {
+			return 0;
+		}
+
+	}
+
+	@GenerateMock
+	public static abstract class Service {
+
+		public abstract String process(int id, char code);
+
+		protected double compute(double[] values) {
+			return values.length;
+		}
+
+	}
+
+	@Test
+	public void generatedMockRegistersCalls() throws IOException {
+		GenerateMockProcessorTest_RepositoryMock<String> repository = new GenerateMockProcessorTest_RepositoryMock<>();
+		GenerateMockProcessorTest_RepositoryRecorder<String> recorder =
+				new GenerateMockProcessorTest_RepositoryRecorder<>();
+
+		assertNull(repository.find(1));
+		assertFalse(repository.isEmpty());
+		assertEquals(0, repository.size());
+		repository.findAll("a", "b");
+
+		assertTrue(repository.getCalls().verifyAndRemoveCall(1,
+				recorder.getMethodCall(() -> recorder.getProxy().find(1))));
+		assertTrue(repository.getCalls().verifyAndRemoveCall(1, recorder.getMethod(recorder.getProxy().isEmpty())));
+		assertTrue(repository.getCalls().verifyAndRemoveCall(1, recorder.getMethod(recorder.getProxy().size())));
+		assertTrue(repository.getCalls().verifyAndRemoveCall(1,
+				recorder.getMethodCall(recorder.getProxy().findAll("a", "b"))));
+		assertTrue(repository.getCalls().verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void generatedRecorderCapturesClassMethods() throws NoSuchMethodException {
+		GenerateMockProcessorTest_ServiceRecorder recorder = new GenerateMockProcessorTest_ServiceRecorder();
+		GenerateMockProcessorTest_ServiceMock service = new GenerateMockProcessorTest_ServiceMock();
+
+		assertNull(service.process(1, 'a'));
+		assertEquals(0d, service.compute(new double[] { 1d }));
+
+		Method process = Service.class.getDeclaredMethod("process", int.class, char.class);
+		assertEquals(new MethodCall(process, new Object[] { 1, 'a' }),
+				recorder.getMethodCall(recorder.getProxy().process(1, 'a')));
+		assertTrue(service.getCalls().verifyAndRemoveCall(1, process, 1, 'a'));
+		assertTrue(service.getCalls().verifyAndRemoveCall(1, recorder.getMethod(recorder.getProxy().compute(null)),
+				new double[] { 1d }));
+		assertTrue(service.getCalls().verifyNoMoreMethodInvocations());
+	}
+
+	@Test
+	public void generatedProxyFactoryOnlySupportsItsOwnType() {
+		assertTrue(GenerateMockProcessorTest_ServiceProxy.FACTORY.supports(Service.class));
+		assertThrows(IllegalArgumentException.class,
+				() -> GenerateMockProcessorTest_ServiceProxy.FACTORY.createProxy(Repository.class, null));
+	}
+
+	@Test
+	public void typesDeclaringMockMethodsAreRejected() throws IOException {
+		JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///Api.java"), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return "@com.semantica.pocketknife.GenerateMock public interface Api { void reset(); }";
+			}
+		};
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		Path outputDirectory = Files.createTempDirectory("generated");
+		try {
+			CompilationTask task = compiler.getTask(null, null, diagnostics,
+					Arrays.asList("-proc:only", "-s", outputDirectory.toString()), null,
+					Collections.singletonList(source));
+			task.setProcessors(Collections.singletonList(new GenerateMockProcessor()));
+
+			assertFalse(task.call());
+			assertTrue(diagnostics.getDiagnostics().stream()
+					.anyMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR
+							&& diagnostic.getMessage(null).contains("getCalls() or reset()")));
+		} finally {
+			// Nothing is generated for rejected types
+			Files.delete(outputDirectory);
+		}
+	}
+
+}